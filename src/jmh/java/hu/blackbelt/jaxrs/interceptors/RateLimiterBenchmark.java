@@ -0,0 +1,116 @@
+package hu.blackbelt.jaxrs.interceptors;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.cxf.endpoint.Endpoint;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.ExchangeImpl;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.message.MessageImpl;
+import org.apache.cxf.service.model.EndpointInfo;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the request path of {@link RateLimiter} (bucket lookup and acquisition), compared to the same requests
+ * passed without the limiter. Rate is high enough so requests are not rejected.
+ *
+ * <p>Run by <code>mvn -Pbenchmark test-compile exec:exec</code>, JMH options can be passed by
+ * <code>-Djmh.args="..."</code> (i.e. <code>-Djmh.args="-t 8 RateLimiterBenchmark"</code>).</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+    private static final String CLIENT_HEADER = "X-Client-Id";
+
+    /**
+     * Number of distinct clients (buckets) of requests.
+     */
+    @Param({"1", "10000"})
+    public int clients;
+
+    private RateLimiter rateLimiter;
+    private Message[] messages;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index;
+    }
+
+    @Setup
+    public void setup() {
+        rateLimiter = new RateLimiter();
+        final Map<String, Object> config = new HashMap<>();
+        config.put("rate", String.valueOf(Long.MAX_VALUE / 2));
+        config.put("client.header", CLIENT_HEADER);
+        rateLimiter.configure(config);
+
+        final EndpointInfo endpointInfo = new EndpointInfo();
+        endpointInfo.setAddress("/benchmark");
+        final Endpoint endpoint = (Endpoint) Proxy.newProxyInstance(Endpoint.class.getClassLoader(), new Class<?>[]{Endpoint.class},
+                (proxy, method, args) -> {
+                    if ("getEndpointInfo".equals(method.getName())) {
+                        return endpointInfo;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+
+        messages = new Message[clients];
+        for (int i = 0; i < clients; i++) {
+            final Message message = new MessageImpl();
+            final Exchange exchange = new ExchangeImpl();
+            exchange.put(Endpoint.class, endpoint);
+            exchange.setInMessage(message);
+            final Map<String, List<String>> headers = new HashMap<>();
+            headers.put(CLIENT_HEADER, Collections.singletonList("client-" + i));
+            message.put(Message.PROTOCOL_HEADERS, headers);
+            messages[i] = message;
+        }
+    }
+
+    @Benchmark
+    public void withoutLimiter(final Cursor cursor, final Blackhole blackhole) {
+        blackhole.consume(next(cursor));
+    }
+
+    @Benchmark
+    public void withLimiter(final Cursor cursor) {
+        rateLimiter.handleMessage(next(cursor));
+    }
+
+    private Message next(final Cursor cursor) {
+        final int index = cursor.index;
+        cursor.index = index + 1 < messages.length ? index + 1 : 0;
+        return messages[index];
+    }
+}
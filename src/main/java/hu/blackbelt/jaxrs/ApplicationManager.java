@@ -101,11 +101,11 @@ public class ApplicationManager {
     class SharedProviderCallback implements SharedProviderStore.Callback {
 
         @Override
-        public void restartApplications(final Collection<Long> applicationIds) {
+        public void restartApplications(final Collection<Long> applicationIds, final RestartCause cause) {
             if (applicationIds != null) {
-                serverManager.restartApplications(applicationIds, getApplicationProviders(applicationIds));
+                serverManager.restartApplications(applicationIds, getApplicationProviders(applicationIds), cause);
             } else {
-                serverManager.restartAllApplications(getApplicationProviders(null));
+                serverManager.restartAllApplications(getApplicationProviders(null), cause);
             }
         }
     }
@@ -123,30 +123,31 @@ public class ApplicationManager {
             if (sharedProviderStore != null) {
                 sharedProviderStore.removeApplication(applicationId);
             }
+            serverManager.removeApplication(applicationId);
         }
 
         @Override
-        public void startApplication(final Long applicationId, final Application application, final Bundle applicationBundle) {
-            serverManager.startApplication(applicationId, application, applicationBundle, getSingleApplicationProviders(applicationId));
+        public void startApplication(final Long applicationId, final Application application, final Bundle applicationBundle, final RestartCause cause) {
+            serverManager.startApplication(applicationId, application, applicationBundle, getSingleApplicationProviders(applicationId), cause);
         }
 
         @Override
-        public void stopApplication(final Long applicationId) {
-            serverManager.stopApplication(applicationId);
+        public void stopApplication(final Long applicationId, final RestartCause cause) {
+            serverManager.stopApplication(applicationId, cause);
         }
 
         @Override
-        public void restartApplications(final Collection<Long> applicationIds) {
+        public void restartApplications(final Collection<Long> applicationIds, final RestartCause cause) {
             if (applicationIds != null) {
-                serverManager.restartApplications(applicationIds, getApplicationProviders(applicationIds));
+                serverManager.restartApplications(applicationIds, getApplicationProviders(applicationIds), cause);
             } else {
-                serverManager.restartAllApplications(getApplicationProviders(null));
+                serverManager.restartAllApplications(getApplicationProviders(null), cause);
             }
         }
 
         @Override
-        public void updateApplicationResources(final Long applicationId, final Application application) {
-            serverManager.updateApplicationResources(applicationId, application, getSingleApplicationProviders(applicationId));
+        public void updateApplicationResources(final Long applicationId, final Application application, final RestartCause cause) {
+            serverManager.updateApplicationResources(applicationId, application, getSingleApplicationProviders(applicationId), cause);
         }
     }
 }
@@ -53,6 +53,7 @@ class ApplicationStore {
     private final Map<Long, String> applicationPaths = new HashMap<>();
     private final Map<Long, Bundle> applicationBundles = new HashMap<>();
     private final Map<Long, Object> lastChangedApplicationResources = new HashMap<>();
+    private final Map<Long, Map<String, Object>> applicationProperties = new HashMap<>();
 
     private final Map<Long, Map<String, Configuration>> providerComponentConfigurations = new HashMap<>();
     private final Map<Long, Set<String>> missingComponents = new HashMap<>();
@@ -125,6 +126,7 @@ class ApplicationStore {
                 applicationBundles.put(applicationId, reference.getBundle());
                 final String applicationPath = (String) reference.getProperty(APPLICATION_PATH);
                 applicationPaths.put(applicationId, applicationPath);
+                applicationProperties.put(applicationId, RestartCause.getProperties(reference));
 
                 callback.addApplication(applicationId);
 
@@ -138,7 +140,7 @@ class ApplicationStore {
 
                 // start application if JAX-RS provider list is empty
                 if (componentProviders.isEmpty()) {
-                    callback.startApplication(applicationId, application, reference.getBundle());
+                    callback.startApplication(applicationId, application, reference.getBundle(), RestartCause.of(RestartCause.Trigger.APPLICATION, applicationId, "registered"));
                 }
             }
 
@@ -178,20 +180,32 @@ class ApplicationStore {
                     log.debug("Previous JAX-RS application resource changes: " + prevChangedResources + "; last changes: " + lastChangedResources);
                 }
 
+                final Map<String, Object> serviceProperties = RestartCause.getProperties(reference);
+                final Map<String, String> changes = RestartCause.diff(applicationProperties.put(applicationId, serviceProperties), serviceProperties);
+                // resource and CXF context changes of the application are attributed to the original cause
+                final RestartCause propertyCause = changes.containsKey(CHANGED_RESOURCES_KEY) ? RestartCause.fromProperties(serviceProperties, changes) : null;
+                final RestartCause cause = propertyCause != null ? propertyCause : RestartCause.of(RestartCause.Trigger.APPLICATION, applicationId, "modified", changes);
+
                 if (!providerComponentsToDelete.isEmpty() || !newProviderComponents.isEmpty() || !Objects.equals(oldApplicationPath, applicationPath)) {
-                    callback.stopApplication(applicationId);
+                    final boolean running = missingComponents.get(applicationId).isEmpty();
+                    if (!newProviderComponents.isEmpty()) {
+                        // application will be started by JAX-RS provider tracker when new JAX-RS providers are available
+                        callback.stopApplication(applicationId, cause);
+                    }
                     missingComponents.get(applicationId).addAll(newProviderComponents);
                     missingComponents.get(applicationId).removeAll(providerComponentsToDelete);
                     providerComponentsToDelete.forEach(providerName -> deleteProviderComponent(applicationId, providerName));
                     newProviderComponents.forEach(providerName -> createProviderComponent(applicationId, providerName, prepareConfiguration(reference, applicationId)));
-                    if (newProviderComponents.isEmpty()) {
-                        // start application only if no new JAX-RS provider is added, it will be started by JAX-RS provider tracker otherwise
-                        callback.startApplication(applicationId, application, reference.getBundle());
+                    if (newProviderComponents.isEmpty() && running) {
+                        // restart is subject of restart storm protection, running endpoint keeps serving while it is deferred
+                        callback.restartApplications(Collections.singleton(applicationId), cause);
+                    } else if (newProviderComponents.isEmpty() && missingComponents.get(applicationId).isEmpty()) {
+                        callback.startApplication(applicationId, application, reference.getBundle(), cause);
                     }
                 } else if (!newProviderObjects.isEmpty() || !providerObjectsToDelete.isEmpty()) {
-                    callback.restartApplications(Collections.singleton(applicationId));
+                    callback.restartApplications(Collections.singleton(applicationId), cause);
                 } else if (!Objects.equals(prevChangedResources, lastChangedResources)) {
-                    callback.updateApplicationResources(applicationId, application);
+                    callback.updateApplicationResources(applicationId, application, cause);
                 }
                 lastChangedApplicationResources.put(applicationId, lastChangedResources);
 
@@ -222,7 +236,7 @@ class ApplicationStore {
             super.removedService(reference, application);
             if (application != null) {
                 final Long applicationId = (Long) reference.getProperty(Constants.SERVICE_ID);
-                callback.stopApplication(applicationId);
+                callback.stopApplication(applicationId, RestartCause.of(RestartCause.Trigger.APPLICATION, applicationId, "unregistered"));
 
                 final Map<String, Object> components = providerComponents.get(applicationId);
                 final Collection<String> providerNames = components != null ? components.keySet() : Collections.emptyList();
@@ -236,6 +250,7 @@ class ApplicationStore {
                 callback.removeApplication(applicationId);
                 missingComponents.remove(applicationId);
                 lastChangedApplicationResources.remove(applicationId);
+                applicationProperties.remove(applicationId);
             }
         }
     }
@@ -306,7 +321,7 @@ class ApplicationStore {
             if (provider != null && provider.getClass().isAnnotationPresent(Provider.class)) {
                 final Long applicationId = (Long) reference.getProperty(APPLICATION_ID);
                 final String providerName = provider.getClass().getName(); // FIXME - get OSGi name instead of Java object class
-                addedLocalProvider(applicationId, providerName, provider);
+                addedLocalProvider(applicationId, providerName, provider, (Long) reference.getProperty(Constants.SERVICE_ID));
             }
             return provider;
         }
@@ -322,13 +337,14 @@ class ApplicationStore {
         }
     }
 
-    private synchronized void addedLocalProvider(final Long applicationId, final String providerName, final Object provider) {
+    private synchronized void addedLocalProvider(final Long applicationId, final String providerName, final Object provider, final Long providerId) {
         providerComponents.get(applicationId).put(providerName, provider);
         final Set<String> components = missingComponents.get(applicationId);
         if (components != null) {
             components.remove(providerName);
             if (components.isEmpty()) {
-                callback.startApplication(applicationId, applications.get(applicationId), applicationBundles.get(applicationId));
+                callback.startApplication(applicationId, applications.get(applicationId), applicationBundles.get(applicationId),
+                        RestartCause.of(RestartCause.Trigger.PROVIDER, providerId, "added " + providerName));
             } else {
                 log.debug("Waiting for JAX-RS provider components: " + components);
             }
@@ -371,12 +387,12 @@ class ApplicationStore {
 
         void removeApplication(Long applicationId);
 
-        void startApplication(Long applicationId, Application application, Bundle applicationBundle);
+        void startApplication(Long applicationId, Application application, Bundle applicationBundle, RestartCause cause);
 
-        void stopApplication(Long applicationId);
+        void stopApplication(Long applicationId, RestartCause cause);
 
-        void restartApplications(Collection<Long> applicationIds);
+        void restartApplications(Collection<Long> applicationIds, RestartCause cause);
 
-        void updateApplicationResources(Long applicationId, Application application);
+        void updateApplicationResources(Long applicationId, Application application, RestartCause cause);
     }
 }
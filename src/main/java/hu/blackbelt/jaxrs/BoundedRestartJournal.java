@@ -0,0 +1,101 @@
+package hu.blackbelt.jaxrs;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * {@link RestartJournal} keeping the last <i>capacity</i> entries.
+ */
+class BoundedRestartJournal implements RestartJournal {
+
+    private final Deque<Entry> entries = new ArrayDeque<>();
+    private int capacity;
+
+    BoundedRestartJournal(final int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    synchronized void add(final Entry entry) {
+        entries.addLast(entry);
+        trim();
+    }
+
+    synchronized void setCapacity(final int capacity) {
+        this.capacity = Math.max(1, capacity);
+        trim();
+    }
+
+    private void trim() {
+        while (entries.size() > capacity) {
+            entries.removeFirst();
+        }
+    }
+
+    @Override
+    public synchronized List<Entry> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    RestartJournalMBean asMBean() {
+        return new RestartJournalMBean() {
+            @Override
+            public int getCapacity() {
+                synchronized (BoundedRestartJournal.this) {
+                    return capacity;
+                }
+            }
+
+            @Override
+            public int getSize() {
+                synchronized (BoundedRestartJournal.this) {
+                    return entries.size();
+                }
+            }
+
+            @Override
+            public String[] getEntries() {
+                return BoundedRestartJournal.this.getEntries().stream()
+                        .map(BoundedRestartJournal::format)
+                        .toArray(String[]::new);
+            }
+
+            @Override
+            public void clear() {
+                BoundedRestartJournal.this.clear();
+            }
+        };
+    }
+
+    static String format(final Entry entry) {
+        return Instant.ofEpochMilli(entry.getTimestamp()) + " " + entry.getOperation() + " " + entry.getApplications()
+                + " in " + entry.getDuration() + " ms, cause: " + entry.getCause();
+    }
+}
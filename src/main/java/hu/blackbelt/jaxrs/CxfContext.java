@@ -20,10 +20,18 @@ package hu.blackbelt.jaxrs;
  * #L%
  */
 
+import lombok.AllArgsConstructor;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.cxf.Bus;
 import org.apache.cxf.BusFactory;
+import org.apache.cxf.attachment.AttachmentDeserializer;
+import org.apache.cxf.endpoint.Server;
+import org.apache.cxf.endpoint.ServerLifeCycleListener;
+import org.apache.cxf.endpoint.ServerLifeCycleManager;
+import org.apache.cxf.endpoint.ServerRegistry;
 import org.apache.cxf.ext.logging.LoggingFeature;
+import org.apache.cxf.feature.Feature;
 import org.apache.cxf.interceptor.Interceptor;
 import org.apache.cxf.message.Message;
 import org.apache.cxf.metrics.MetricsFeature;
@@ -39,6 +47,8 @@ import org.osgi.util.tracker.ServiceTracker;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component(immediate = true, configurationPolicy = ConfigurationPolicy.REQUIRE, service = CxfContext.class)
 @Designate(ocd = CxfContext.Config.class)
@@ -71,6 +81,56 @@ public class CxfContext {
 
         @AttributeDefinition(required = false, name = "Enable logging", type = AttributeType.BOOLEAN)
         boolean logging_enabled() default LOGGING_ENABLED_DEFAULT;
+
+        @AttributeDefinition(required = false, name = "Invocation executor", description = "Executor running resource invocations: DEFAULT (transport thread), PLATFORM (bounded thread pool) or VIRTUAL (virtual threads, requires Java 21). Requests are suspended so transport threads are released, it requires asynchronous support of servlet transport.")
+        ExecutorType executor_type() default ExecutorType.DEFAULT;
+
+        @AttributeDefinition(required = false, name = "Invocation executor pool size", description = "Maximum number of threads of PLATFORM invocation executor.", type = AttributeType.INTEGER)
+        int executor_pool_size() default EXECUTOR_POOL_SIZE_DEFAULT;
+
+        @AttributeDefinition(required = false, name = "Invocation executor queue size", description = "Maximum number of invocations waiting for PLATFORM invocation executor, invocations are run by transport thread (without suspending requests) if queue is full.", type = AttributeType.INTEGER)
+        int executor_queue_size() default EXECUTOR_QUEUE_SIZE_DEFAULT;
+
+        @AttributeDefinition(required = false, name = "HTTP transport", description = "Transport of applications: SERVLET (servlet container) or NETTY (embedded Netty HTTP server, requires CXF Netty server transport).")
+        TransportType transport_type() default TransportType.SERVLET;
+
+        @AttributeDefinition(required = false, name = "Netty HTTP server host")
+        String transport_netty_host() default TRANSPORT_NETTY_HOST_DEFAULT;
+
+        @AttributeDefinition(required = false, name = "Netty HTTP server port", type = AttributeType.INTEGER)
+        int transport_netty_port() default TRANSPORT_NETTY_PORT_DEFAULT;
+
+        @AttributeDefinition(required = false, name = "Netty HTTP server threads", description = "Number of Netty worker (event loop) threads.", type = AttributeType.INTEGER)
+        int transport_netty_threads() default TRANSPORT_NETTY_THREADS_DEFAULT;
+
+        @AttributeDefinition(required = false, name = "Netty HTTP server idle timeout", description = "Idle (keep-alive) connections are closed after timeout (in seconds).", type = AttributeType.INTEGER)
+        int transport_netty_idleTimeout() default TRANSPORT_NETTY_IDLE_TIMEOUT_DEFAULT;
+
+        @AttributeDefinition(required = false, name = "Netty HTTP server max chunk content size", description = "Maximum size of aggregated HTTP content (in bytes).", type = AttributeType.INTEGER)
+        int transport_netty_maxChunkContentSize() default TRANSPORT_NETTY_MAX_CHUNK_CONTENT_SIZE_DEFAULT;
+
+        @AttributeDefinition(required = false, name = "Upload memory threshold", description = "Multipart parts larger than threshold (in bytes) are streamed to temporary files, 0 means CXF default.", type = AttributeType.LONG)
+        long upload_memoryThreshold() default UPLOAD_MEMORY_THRESHOLD_DEFAULT;
+
+        @AttributeDefinition(required = false, name = "Upload directory", description = "Directory of temporary files of multipart parts, system temporary directory is used if not set.")
+        String upload_directory();
+
+        @AttributeDefinition(required = false, name = "Upload max part size", description = "Maximum size of a multipart part (in bytes), 0 means unlimited.", type = AttributeType.LONG)
+        long upload_maxPartSize() default UPLOAD_MAX_PART_SIZE_DEFAULT;
+
+        @AttributeDefinition(required = false, name = "Upload max request size", description = "Maximum size of a request body (in bytes), 0 means unlimited.", type = AttributeType.LONG)
+        long upload_maxRequestSize() default UPLOAD_MAX_REQUEST_SIZE_DEFAULT;
+
+        @AttributeDefinition(required = false, name = "Upload max in-flight size", description = "Maximum size of request bodies being received by applications of the context at the same time (in bytes), 0 means unlimited.", type = AttributeType.LONG)
+        long upload_maxInFlightSize() default UPLOAD_MAX_IN_FLIGHT_SIZE_DEFAULT;
+    }
+
+    public enum ExecutorType {
+        DEFAULT, PLATFORM, VIRTUAL
+    }
+
+    public enum TransportType {
+        SERVLET, NETTY
     }
 
     private static final boolean SKIP_DEFAULT_JSON_PROVIDER_REGISTRATION_DEFAULT = true;
@@ -86,6 +146,25 @@ public class CxfContext {
     private Boolean metricsEnabled;
     private Boolean loggingEnabled;
 
+    private static final int EXECUTOR_POOL_SIZE_DEFAULT = 64;
+    private static final int EXECUTOR_QUEUE_SIZE_DEFAULT = 1024;
+    private volatile ExecutorType executorType = ExecutorType.DEFAULT;
+    private volatile int executorPoolSize;
+    private volatile int executorQueueSize;
+    private volatile ExecutorService invocationExecutorService;
+    private final Executor invocationExecutor = new InvocationExecutor();
+
+    private static final String TRANSPORT_NETTY_HOST_DEFAULT = "0.0.0.0";
+    static final int TRANSPORT_NETTY_PORT_DEFAULT = 8182;
+    private static final int TRANSPORT_NETTY_THREADS_DEFAULT = 0;
+    private static final int TRANSPORT_NETTY_IDLE_TIMEOUT_DEFAULT = 60;
+    private static final int TRANSPORT_NETTY_MAX_CHUNK_CONTENT_SIZE_DEFAULT = 1024 * 1024;
+    private NettyTransport.Settings nettySettings;
+    private volatile NettyTransport nettyTransport;
+    // replaced transports keep serving until their endpoints are restarted on the new one
+    private final List<NettyTransport> retiredNettyTransports = new CopyOnWriteArrayList<>();
+    private final ServerLifeCycleListener retiredTransportListener = new RetiredTransportListener();
+
     @Reference(policyOption = ReferencePolicyOption.GREEDY)
     private ConfigurationAdmin configAdmin;
 
@@ -97,9 +176,12 @@ public class CxfContext {
     private String outInterceptorsFilter;
     private String faultInterceptorsFilter;
 
-    private List<Interceptor<? extends Message>> inInterceptors = new LinkedList<>();
-    private List<Interceptor<? extends Message>> outInterceptors = new LinkedList<>();
-    private List<Interceptor<? extends Message>> faultInterceptors = new LinkedList<>();
+    // tracked interceptors, guarded by this
+    private final List<Interceptor<? extends Message>> inInterceptors = new ArrayList<>();
+    private final List<Interceptor<? extends Message>> outInterceptors = new ArrayList<>();
+    private final List<Interceptor<? extends Message>> faultInterceptors = new ArrayList<>();
+
+    private volatile InterceptorChains interceptorChains = InterceptorChains.EMPTY;
 
     private InterceptorTracker inInterceptorTracker;
     private InterceptorTracker outInterceptorTracker;
@@ -108,6 +190,15 @@ public class CxfContext {
     private Bus bus;
     private ServiceRegistration<Bus> serviceRegistration;
 
+    private static final long UPLOAD_MEMORY_THRESHOLD_DEFAULT = 0L;
+    private static final long UPLOAD_MAX_PART_SIZE_DEFAULT = 0L;
+    private static final long UPLOAD_MAX_REQUEST_SIZE_DEFAULT = 0L;
+    private static final long UPLOAD_MAX_IN_FLIGHT_SIZE_DEFAULT = 0L;
+    private UploadSettings uploadSettings;
+    private final UploadLimitInterceptor uploadLimitInterceptor = new UploadLimitInterceptor();
+
+    private final Map<Class<? extends Feature>, AttachedFeature> attachedFeatures = new HashMap<>();
+
     private String pid;
 
     @Activate
@@ -116,6 +207,14 @@ public class CxfContext {
         id = config.busId();
         Objects.requireNonNull(id, "Property 'busId' is not set");
 
+        // bus is created first, interceptor chains are ordered by its phases
+        bus = BusFactory.newInstance().createBus();
+        bus.setId(id);
+        final ServerLifeCycleManager serverLifeCycleManager = bus.getExtension(ServerLifeCycleManager.class);
+        if (serverLifeCycleManager != null) {
+            serverLifeCycleManager.registerListener(retiredTransportListener);
+        }
+
         inInterceptorsFilter = config.interceptors_in_components();
         if (inInterceptorsFilter != null && !inInterceptorsFilter.trim().isEmpty()) {
             try {
@@ -149,8 +248,16 @@ public class CxfContext {
         metricsEnabled = config.metrics_enabled();
         loggingEnabled = config.logging_enabled();
 
-        bus = BusFactory.newInstance().createBus();
-        bus.setId(id);
+        executorType = config.executor_type() != null ? config.executor_type() : ExecutorType.DEFAULT;
+        executorPoolSize = config.executor_pool_size();
+        executorQueueSize = config.executor_queue_size();
+        invocationExecutorService = createExecutorService(executorType, executorPoolSize, executorQueueSize);
+
+        nettySettings = getNettySettings(config);
+        nettyTransport = startNettyTransport(nettySettings, null);
+
+        uploadSettings = getUploadSettings(config);
+
         final Dictionary<String, Object> props = new Hashtable<>();
         props.put("id", id);
         registerBus(context, bus);
@@ -177,22 +284,82 @@ public class CxfContext {
         if (!metricsEnabled.equals(newMetricsEnabled)) {
             metricsEnabled = newMetricsEnabled;
             if (metricsEnabled) {
-                bus.getFeatures().add(new MetricsFeature());
+                attachFeature(new MetricsFeature());
             } else {
-                bus.getFeatures().removeIf(f -> f instanceof MetricsFeature);
+                detachFeature(MetricsFeature.class);
             }
             updated = true;
         }
-        if (!loggingEnabled.equals(newMetricsEnabled)) {
+        if (!loggingEnabled.equals(newLoggingEnabled)) {
             loggingEnabled = newLoggingEnabled;
             if (loggingEnabled) {
-                bus.getFeatures().add(new LoggingFeature());
+                attachFeature(new LoggingFeature());
             } else {
-                bus.getFeatures().removeIf(f -> f instanceof LoggingFeature);
+                detachFeature(LoggingFeature.class);
             }
             updated = true;
         }
 
+        final ExecutorType newExecutorType = config.executor_type() != null ? config.executor_type() : ExecutorType.DEFAULT;
+        final int newExecutorPoolSize = config.executor_pool_size();
+        final int newExecutorQueueSize = config.executor_queue_size();
+        boolean executorChanged = false;
+        if (executorType != newExecutorType || executorPoolSize != newExecutorPoolSize || executorQueueSize != newExecutorQueueSize) {
+            log.debug("Invocation executor has been changed: {}", newExecutorType);
+            // endpoints must be restarted only if executor is set or unset, running endpoints are using the new one otherwise
+            executorChanged = (executorType == ExecutorType.DEFAULT) != (newExecutorType == ExecutorType.DEFAULT);
+            executorType = newExecutorType;
+            executorPoolSize = newExecutorPoolSize;
+            executorQueueSize = newExecutorQueueSize;
+            final ExecutorService oldExecutorService = invocationExecutorService;
+            invocationExecutorService = createExecutorService(executorType, executorPoolSize, executorQueueSize);
+            if (oldExecutorService != null) {
+                oldExecutorService.shutdown();
+            }
+            updated = true;
+        }
+
+        final NettyTransport.Settings newNettySettings = getNettySettings(config);
+        boolean transportChanged = false;
+        if (!Objects.equals(nettySettings, newNettySettings)) {
+            log.debug("HTTP transport has been changed: {}", newNettySettings);
+            // endpoints must be restarted to create destinations by the new transport
+            final NettyTransport oldTransport = nettyTransport;
+            if (newNettySettings != null && oldTransport != null && newNettySettings.getPort() == oldTransport.getSettings().getPort()) {
+                // Netty engines are registered by port, the old one must be stopped before the new one is created
+                log.warn("Netty HTTP transport of CXF bus {} is restarted on the same port, applications are not available until they are restarted", id);
+                stopNettyTransport();
+                nettyTransport = startNettyTransport(newNettySettings, null);
+                nettySettings = newNettySettings;
+                transportChanged = true;
+            } else if (newNettySettings != null && !NettyTransport.isAvailable(newNettySettings)) {
+                log.error("Port {} of Netty HTTP transport of CXF bus {} is not available, applications are kept on the current transport",
+                        newNettySettings.getPort(), id);
+            } else {
+                // the old transport is stopped once its endpoints are restarted on the new one
+                final NettyTransport newTransport = startNettyTransport(newNettySettings, oldTransport);
+                if (newNettySettings == null || newTransport != null) {
+                    nettyTransport = newTransport;
+                    nettySettings = newNettySettings;
+                    transportChanged = true;
+                    if (oldTransport != null) {
+                        retiredNettyTransports.add(oldTransport);
+                        stopRetiredNettyTransports(null);
+                    }
+                }
+            }
+            updated = true;
+        }
+
+        final UploadSettings newUploadSettings = getUploadSettings(config);
+        if (!Objects.equals(uploadSettings, newUploadSettings)) {
+            // running endpoints are using the new settings from the next request
+            log.debug("Upload settings have been changed: {}", newUploadSettings);
+            uploadSettings = newUploadSettings;
+            applyUploadSettings();
+            updated = true;
+        }
+
         final String newInInterceptorsFilter = config.interceptors_in_components();
         if (!Objects.equals(inInterceptorsFilter, newInInterceptorsFilter)) {
             log.debug("IN interceptors have been changed");
@@ -251,6 +418,9 @@ public class CxfContext {
         if (updated) {
             log.debug("CXF bus registered: {} [{}={}; {}={}]", id, SKIP_DEFAULT_JSON_PROVIDER_REGISTRATION_KEY, skipDefaultJsonProviderRegistration, WADL_SERVICE_DESCRIPTION_AVAILABLE_KEY, wadlServiceDescriptionAvailable);
         }
+        if (executorChanged || transportChanged) {
+            changedConfiguration(null, (executorChanged ? "executor" : "transport") + " changed");
+        }
     }
 
     @Deactivate
@@ -268,6 +438,21 @@ public class CxfContext {
             faultInterceptorTracker = null;
         }
 
+        if (invocationExecutorService != null) {
+            invocationExecutorService.shutdown();
+            invocationExecutorService = null;
+        }
+
+        stopNettyTransport();
+        retiredNettyTransports.forEach(this::stopNettyTransport);
+        retiredNettyTransports.clear();
+        nettySettings = null;
+        uploadSettings = null;
+        if (bus != null && bus.getExtension(ServerLifeCycleManager.class) != null) {
+            bus.getExtension(ServerLifeCycleManager.class).unRegisterListener(retiredTransportListener);
+        }
+
+        attachedFeatures.clear();
         if (bus != null) {
             bus.shutdown(false);
         }
@@ -294,16 +479,111 @@ public class CxfContext {
             log.debug("CXF bus registered: {} [{}={}; {}={}]", id, SKIP_DEFAULT_JSON_PROVIDER_REGISTRATION_KEY, skipDefaultJsonProviderRegistration, WADL_SERVICE_DESCRIPTION_AVAILABLE_KEY, wadlServiceDescriptionAvailable);
         }
         if (metricsEnabled) {
-            bus.getFeatures().add(new MetricsFeature());
+            attachFeature(new MetricsFeature());
         }
         if (loggingEnabled) {
-            bus.getFeatures().add(new LoggingFeature());
+            attachFeature(new LoggingFeature());
         }
+        applyUploadSettings();
         final Dictionary<String, Object> props = new Hashtable<>();
         props.put("id", id);
         serviceRegistration = context.registerService(Bus.class, bus, props);
     }
 
+    /**
+     * Attach a feature to the bus. Interceptors of the feature are added to the interceptor lists of the bus so they
+     * are used by running endpoints of the context from the next message, without restarting them.
+     *
+     * @param feature feature to attach
+     */
+    private void attachFeature(final Feature feature) {
+        detachFeature(feature.getClass());
+
+        final Set<Interceptor<? extends Message>> in = newIdentitySet(bus.getInInterceptors());
+        final Set<Interceptor<? extends Message>> out = newIdentitySet(bus.getOutInterceptors());
+        final Set<Interceptor<? extends Message>> inFault = newIdentitySet(bus.getInFaultInterceptors());
+        final Set<Interceptor<? extends Message>> outFault = newIdentitySet(bus.getOutFaultInterceptors());
+
+        feature.initialize(bus);
+        bus.getFeatures().add(feature);
+
+        final AttachedFeature attachedFeature = new AttachedFeature(feature,
+                getAddedInterceptors(in, bus.getInInterceptors()),
+                getAddedInterceptors(out, bus.getOutInterceptors()),
+                getAddedInterceptors(inFault, bus.getInFaultInterceptors()),
+                getAddedInterceptors(outFault, bus.getOutFaultInterceptors()));
+        attachedFeatures.put(feature.getClass(), attachedFeature);
+        log.debug("Feature {} attached to CXF bus: {}", feature.getClass().getSimpleName(), id);
+    }
+
+    /**
+     * Detach a feature from the bus, interceptors added by the feature are removed from running endpoints.
+     *
+     * @param featureClass class of the feature
+     */
+    private void detachFeature(final Class<? extends Feature> featureClass) {
+        final AttachedFeature attachedFeature = attachedFeatures.remove(featureClass);
+        if (attachedFeature != null) {
+            bus.getInInterceptors().removeAll(attachedFeature.inInterceptors);
+            bus.getOutInterceptors().removeAll(attachedFeature.outInterceptors);
+            bus.getInFaultInterceptors().removeAll(attachedFeature.inFaultInterceptors);
+            bus.getOutFaultInterceptors().removeAll(attachedFeature.outFaultInterceptors);
+            log.debug("Feature {} detached from CXF bus: {}", featureClass.getSimpleName(), id);
+        }
+        bus.getFeatures().removeIf(featureClass::isInstance);
+    }
+
+    private static Set<Interceptor<? extends Message>> newIdentitySet(final Collection<Interceptor<? extends Message>> interceptors) {
+        final Set<Interceptor<? extends Message>> result = Collections.newSetFromMap(new IdentityHashMap<>());
+        result.addAll(interceptors);
+        return result;
+    }
+
+    private static List<Interceptor<? extends Message>> getAddedInterceptors(final Set<Interceptor<? extends Message>> before, final Collection<Interceptor<? extends Message>> after) {
+        final List<Interceptor<? extends Message>> added = new ArrayList<>();
+        after.stream().filter(i -> !before.contains(i)).forEach(added::add);
+        return added;
+    }
+
+    /**
+     * Feature attached to the bus and interceptors added by it.
+     */
+    @AllArgsConstructor
+    private static class AttachedFeature {
+        final Feature feature;
+        final List<Interceptor<? extends Message>> inInterceptors;
+        final List<Interceptor<? extends Message>> outInterceptors;
+        final List<Interceptor<? extends Message>> inFaultInterceptors;
+        final List<Interceptor<? extends Message>> outFaultInterceptors;
+    }
+
+    /**
+     * Upload settings of the context, sizes are in bytes (0 means default or unlimited).
+     */
+    @Value
+    private static class UploadSettings {
+        long memoryThreshold;
+        String directory;
+        long maxPartSize;
+        long maxRequestSize;
+        long maxInFlightSize;
+    }
+
+    /**
+     * Listener stopping replaced Netty transports when their last endpoint is stopped.
+     */
+    private class RetiredTransportListener implements ServerLifeCycleListener {
+
+        @Override
+        public void startServer(final Server server) {
+        }
+
+        @Override
+        public void stopServer(final Server server) {
+            stopRetiredNettyTransports(server);
+        }
+    }
+
     private class InterceptorTracker extends ServiceTracker<Interceptor<? extends Message>, Interceptor<? extends Message>> {
 
         final List<Interceptor<? extends Message>> interceptors;
@@ -317,8 +597,11 @@ public class CxfContext {
         public Interceptor<? extends Message> addingService(final ServiceReference<Interceptor<? extends Message>> reference) {
             final Interceptor<? extends Message> interceptor = super.addingService(reference);
             if (interceptor != null) {
-                interceptors.add(interceptor);
-                changedConfiguration();
+                synchronized (CxfContext.this) {
+                    interceptors.add(interceptor);
+                    rebuildInterceptorChains();
+                }
+                changedConfiguration((Long) reference.getProperty(Constants.SERVICE_ID), "added interceptor " + interceptor.getClass().getName());
             }
             return interceptor;
         }
@@ -327,8 +610,11 @@ public class CxfContext {
         public void removedService(final ServiceReference<Interceptor<? extends Message>> reference, final Interceptor<? extends Message> interceptor) {
             super.removedService(reference, interceptor);
             if (interceptor != null) {
-                interceptors.remove(interceptor);
-                changedConfiguration();
+                synchronized (CxfContext.this) {
+                    interceptors.remove(interceptor);
+                    rebuildInterceptorChains();
+                }
+                changedConfiguration((Long) reference.getProperty(Constants.SERVICE_ID), "removed interceptor " + interceptor.getClass().getName());
             }
         }
     }
@@ -337,19 +623,195 @@ public class CxfContext {
         return bus;
     }
 
+    public String getBusId() {
+        return id;
+    }
+
+    /**
+     * Get base address of applications.
+     *
+     * @return absolute address of embedded HTTP server, <code>null</code> if applications are published on servlet
+     * transport (by relative addresses)
+     */
+    public String getBaseAddress() {
+        final NettyTransport transport = nettyTransport;
+        return transport != null ? transport.getBaseAddress() : null;
+    }
+
+    private static NettyTransport.Settings getNettySettings(final Config config) {
+        if (config.transport_type() != TransportType.NETTY) {
+            return null;
+        }
+        final int threads = config.transport_netty_threads() > 0 ? config.transport_netty_threads() : Runtime.getRuntime().availableProcessors() * 2;
+        return new NettyTransport.Settings(config.transport_netty_host(), config.transport_netty_port(), threads,
+                config.transport_netty_idleTimeout(), config.transport_netty_maxChunkContentSize());
+    }
+
+    private static UploadSettings getUploadSettings(final Config config) {
+        final String directory = config.upload_directory() != null && !config.upload_directory().trim().isEmpty() ? config.upload_directory().trim() : null;
+        return new UploadSettings(Math.max(config.upload_memoryThreshold(), 0L), directory, Math.max(config.upload_maxPartSize(), 0L),
+                Math.max(config.upload_maxRequestSize(), 0L), Math.max(config.upload_maxInFlightSize(), 0L));
+    }
+
+    /**
+     * Apply upload settings to the bus. Attachment properties are used by CXF to cache multipart parts above the memory
+     * threshold in temporary files (parts are read lazily by the application), limit interceptor is added to the bus
+     * only if request size or in-flight size is limited.
+     */
+    private void applyUploadSettings() {
+        final UploadSettings settings = uploadSettings;
+        bus.setProperty(AttachmentDeserializer.ATTACHMENT_MEMORY_THRESHOLD, settings.getMemoryThreshold() > 0 ? settings.getMemoryThreshold() : null);
+        bus.setProperty(AttachmentDeserializer.ATTACHMENT_DIRECTORY, settings.getDirectory());
+        bus.setProperty(AttachmentDeserializer.ATTACHMENT_MAX_SIZE, settings.getMaxPartSize() > 0 ? settings.getMaxPartSize() : null);
+
+        uploadLimitInterceptor.configure(settings.getMaxRequestSize(), settings.getMaxInFlightSize());
+        final boolean limited = settings.getMaxRequestSize() > 0 || settings.getMaxInFlightSize() > 0;
+        final boolean attached = bus.getInInterceptors().contains(uploadLimitInterceptor);
+        if (limited && !attached) {
+            bus.getInInterceptors().add(uploadLimitInterceptor);
+        } else if (!limited && attached) {
+            bus.getInInterceptors().remove(uploadLimitInterceptor);
+        }
+    }
+
+    private NettyTransport startNettyTransport(final NettyTransport.Settings settings, final NettyTransport replacedTransport) {
+        if (settings == null) {
+            if (replacedTransport != null) {
+                replacedTransport.restoreDestinationFactory();
+            }
+            return null;
+        }
+        try {
+            final NettyTransport transport = new NettyTransport(bus, settings);
+            transport.start(replacedTransport);
+            return transport;
+        } catch (IllegalStateException | LinkageError ex) {
+            log.error("Unable to start Netty HTTP transport of CXF bus " + id + (replacedTransport != null ? "" : ", using servlet transport"), ex);
+            return null;
+        }
+    }
+
+    private void stopNettyTransport() {
+        final NettyTransport transport = nettyTransport;
+        nettyTransport = null;
+        if (transport != null) {
+            stopNettyTransport(transport);
+        }
+    }
+
+    private void stopNettyTransport(final NettyTransport transport) {
+        try {
+            transport.stop();
+        } catch (RuntimeException ex) {
+            log.warn("Unable to stop Netty HTTP transport of CXF bus " + id, ex);
+        }
+    }
+
+    /**
+     * Stop replaced Netty transports that have no running endpoints.
+     *
+     * @param stoppingServer server being stopped (still registered), <code>null</code> if not called by a server
+     */
+    private void stopRetiredNettyTransports(final Server stoppingServer) {
+        if (retiredNettyTransports.isEmpty() || bus == null) {
+            return;
+        }
+        final ServerRegistry serverRegistry = bus.getExtension(ServerRegistry.class);
+        final List<Server> servers = serverRegistry != null ? serverRegistry.getServers() : Collections.emptyList();
+        for (final NettyTransport transport : retiredNettyTransports) {
+            final boolean used = servers.stream()
+                    .filter(server -> server != stoppingServer && server.getEndpoint() != null && server.getEndpoint().getEndpointInfo() != null)
+                    .map(server -> server.getEndpoint().getEndpointInfo().getAddress())
+                    .anyMatch(address -> address != null && address.startsWith(transport.getBaseAddress() + "/"));
+            if (!used && retiredNettyTransports.remove(transport)) {
+                stopNettyTransport(transport);
+            }
+        }
+    }
+
+    /**
+     * Get executor of resource invocations, requests are suspended and handed off to the executor by
+     * {@link InvocationHandOffInterceptor}.
+     *
+     * @return invocation executor (rejecting invocations that must be run by transport threads), <code>null</code> if
+     * invocations are run by transport threads
+     */
+    public Executor getExecutor() {
+        return executorType != ExecutorType.DEFAULT ? invocationExecutor : null;
+    }
+
+    private ExecutorService createExecutorService(final ExecutorType type, final int poolSize, final int queueSize) {
+        switch (type) {
+            case VIRTUAL:
+                try {
+                    // virtual threads are available since Java 21, bundle is compiled for older releases
+                    return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                } catch (ReflectiveOperationException ex) {
+                    log.warn("Virtual threads are not supported by Java runtime, using platform thread pool for CXF bus: " + id);
+                    return createExecutorService(ExecutorType.PLATFORM, poolSize, queueSize);
+                }
+            case PLATFORM:
+                final AtomicInteger threadCounter = new AtomicInteger();
+                final ThreadPoolExecutor executor = new ThreadPoolExecutor(Math.max(1, poolSize), Math.max(1, poolSize), 60L, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+                        r -> {
+                            final Thread thread = new Thread(r, "cxf-" + id + "-invoker-" + threadCounter.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+                executor.allowCoreThreadTimeOut(true);
+                return executor;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Executor used by endpoints, it is delegating invocations to the actual executor so changes are applied without
+     * restarting endpoints. Invocations are rejected if the executor is full, replaced or stopped, so they are run by
+     * the transport thread without suspending the request.
+     */
+    private class InvocationExecutor implements Executor {
+
+        @Override
+        public void execute(final Runnable command) {
+            final ExecutorService executorService = invocationExecutorService;
+            if (executorService == null) {
+                throw new RejectedExecutionException("Invocation executor is not running");
+            }
+            executorService.execute(command);
+        }
+    }
+
+    /**
+     * Get current snapshot of interceptors, IN, OUT and FAULT interceptors of the snapshot are consistent.
+     *
+     * @return interceptor chains
+     */
+    public InterceptorChains getInterceptorChains() {
+        return interceptorChains;
+    }
+
     public List<Interceptor<? extends Message>> getInInterceptors() {
-        return Collections.unmodifiableList(inInterceptors);
+        return interceptorChains.getInInterceptors();
     }
 
     public List<Interceptor<? extends Message>> getOutInterceptors() {
-        return Collections.unmodifiableList(outInterceptors);
+        return interceptorChains.getOutInterceptors();
     }
 
     public List<Interceptor<? extends Message>> getFaultInterceptors() {
-        return Collections.unmodifiableList(faultInterceptors);
+        return interceptorChains.getFaultInterceptors();
+    }
+
+    private synchronized void rebuildInterceptorChains() {
+        interceptorChains = InterceptorChains.create(interceptorChains.getVersion() + 1, inInterceptors, outInterceptors, faultInterceptors);
+        if (log.isTraceEnabled()) {
+            log.trace("Interceptor chains of CXF bus {} have been changed: {}", id, interceptorChains);
+        }
     }
 
-    private void changedConfiguration() {
+    private void changedConfiguration(final Long serviceId, final String description) {
         try {
             if (log.isDebugEnabled()) {
                 log.debug("Changed CXF context: " + pid);
@@ -360,6 +822,7 @@ public class CxfContext {
                     if (cfg != null) {
                         final Dictionary<String, Object> props = cfg.getProperties();
                         props.put(LAST_CHANGED_CONFIGURATION, System.currentTimeMillis());
+                        RestartCause.setProperties(props, RestartCause.Trigger.CXF_CONTEXT, serviceId, description);
                         try {
                             cfg.update(props);
                         } catch (IllegalStateException ex) {
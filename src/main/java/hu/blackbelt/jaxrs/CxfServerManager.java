@@ -21,14 +21,22 @@ package hu.blackbelt.jaxrs;
  */
 
 import hu.blackbelt.jaxrs.application.BasicApplication;
+import hu.blackbelt.jaxrs.application.StaticContentResource;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.cxf.Bus;
+import org.apache.cxf.BusFactory;
 import org.apache.cxf.bus.blueprint.BundleDelegatingClassLoader;
 import org.apache.cxf.endpoint.Server;
 import org.apache.cxf.jaxrs.JAXRSServerFactoryBean;
+import org.apache.cxf.jaxrs.client.WebClient;
+import org.apache.cxf.jaxrs.model.ClassResourceInfo;
+import org.apache.cxf.jaxrs.model.URITemplate;
 import org.osgi.framework.*;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
 import org.osgi.service.component.annotations.*;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
 import org.osgi.service.metatype.annotations.AttributeDefinition;
 import org.osgi.service.metatype.annotations.AttributeType;
 import org.osgi.service.metatype.annotations.Designate;
@@ -36,15 +44,20 @@ import org.osgi.service.metatype.annotations.ObjectClassDefinition;
 
 import javax.ws.rs.ApplicationPath;
 import javax.ws.rs.core.Application;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.RuntimeDelegate;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
 
-@Component(property = ServerManager.ALIAS_KEY + "=" + CxfServerManager.ALIAS_VALUE)
+@Component(property = ServerManager.ALIAS_KEY + "=" + CxfServerManager.ALIAS_VALUE, service = {ServerManager.class, LocalClientFactory.class, RestartJournal.class})
 @Designate(ocd = CxfServerManager.Config.class)
 @Slf4j
-public class CxfServerManager implements ServerManager {
+public class CxfServerManager implements ServerManager, LocalClientFactory, RestartJournal {
 
     @ObjectClassDefinition
     public @interface Config {
@@ -63,14 +76,114 @@ public class CxfServerManager implements ServerManager {
 
         @AttributeDefinition(required = false, name = "FAULT interceptors filter expression")
         String interceptors_fault_components();
+
+        @AttributeDefinition(required = false, name = "Invocation executor", description = "Executor running resource invocations: DEFAULT (transport thread), PLATFORM (bounded thread pool) or VIRTUAL (virtual threads, requires Java 21). Requests are suspended so transport threads are released, it requires asynchronous support of servlet transport.")
+        CxfContext.ExecutorType executor_type();
+
+        @AttributeDefinition(required = false, name = "Invocation executor pool size", type = AttributeType.INTEGER)
+        int executor_pool_size();
+
+        @AttributeDefinition(required = false, name = "Invocation executor queue size", type = AttributeType.INTEGER)
+        int executor_queue_size();
+
+        @AttributeDefinition(required = false, name = "HTTP transport", description = "Transport of applications: SERVLET (servlet container) or NETTY (embedded Netty HTTP server).")
+        String transport_type();
+
+        @AttributeDefinition(required = false, name = "Netty HTTP server host")
+        String transport_netty_host();
+
+        @AttributeDefinition(required = false, name = "Netty HTTP server port", type = AttributeType.INTEGER)
+        int transport_netty_port();
+
+        @AttributeDefinition(required = false, name = "Netty HTTP server threads", type = AttributeType.INTEGER)
+        int transport_netty_threads();
+
+        @AttributeDefinition(required = false, name = "Upload memory threshold", type = AttributeType.LONG)
+        long upload_memoryThreshold();
+
+        @AttributeDefinition(required = false, name = "Upload directory")
+        String upload_directory();
+
+        @AttributeDefinition(required = false, name = "Upload max part size", type = AttributeType.LONG)
+        long upload_maxPartSize();
+
+        @AttributeDefinition(required = false, name = "Upload max request size", type = AttributeType.LONG)
+        long upload_maxRequestSize();
+
+        @AttributeDefinition(required = false, name = "Upload max in-flight size", type = AttributeType.LONG)
+        long upload_maxInFlightSize();
+
+        @AttributeDefinition(required = false, name = "Local transport enabled", description = "Publish applications on CXF local transport too, local clients are available by LocalClientFactory service.", type = AttributeType.BOOLEAN)
+        boolean local_transport_enabled();
+
+        @AttributeDefinition(required = false, name = "Number of default CXF buses", description = "Applications bound to the default CXF context are distributed across buses by application path or by " + BUS_GROUP_KEY + " application property.", type = AttributeType.INTEGER)
+        int bus_shards();
+
+        @AttributeDefinition(required = false, name = "Drain timeout", description = "Maximum time (in milliseconds) waiting for running requests before stopping or restarting an application, new requests are rejected while draining.", type = AttributeType.INTEGER)
+        int drain_timeout() default DRAIN_TIMEOUT_DEFAULT;
+
+        @AttributeDefinition(required = false, name = "Restart journal size", description = "Number of start, stop and restart operations kept in the restart journal.", type = AttributeType.INTEGER)
+        int journal_size() default JOURNAL_SIZE_DEFAULT;
+
+        @AttributeDefinition(required = false, name = "Restart threshold", description = "Maximum number of restart requests of an application in the restart window, restarts are deferred by exponential backoff above it (0 disables restart storm protection).", type = AttributeType.INTEGER)
+        int restart_threshold() default RESTART_THRESHOLD_DEFAULT;
+
+        @AttributeDefinition(required = false, name = "Restart window", description = "Length of the restart window in milliseconds.", type = AttributeType.LONG)
+        long restart_window() default RESTART_WINDOW_DEFAULT;
+
+        @AttributeDefinition(required = false, name = "Initial restart backoff", description = "Initial backoff of deferred restarts in milliseconds.", type = AttributeType.LONG)
+        long restart_backoff_initial() default RESTART_BACKOFF_INITIAL_DEFAULT;
+
+        @AttributeDefinition(required = false, name = "Maximum restart backoff", description = "Maximum backoff of deferred restarts in milliseconds.", type = AttributeType.LONG)
+        long restart_backoff_max() default RESTART_BACKOFF_MAX_DEFAULT;
+
+        @AttributeDefinition(required = false, name = "Rolling restart", description = "Restart applications in batches ordered by " + PRIORITY_KEY + " application property so the others keep serving.", type = AttributeType.BOOLEAN)
+        boolean restart_rolling();
+
+        @AttributeDefinition(required = false, name = "Maximum unavailable applications", description = "Number of applications restarted at once in rolling restart.", type = AttributeType.INTEGER)
+        int restart_rolling_maxUnavailable() default RESTART_ROLLING_MAX_UNAVAILABLE_DEFAULT;
+
+        @AttributeDefinition(required = false, name = "Rolling restart pause", description = "Pause between batches of rolling restart in milliseconds.", type = AttributeType.LONG)
+        long restart_rolling_pause();
+
+        @AttributeDefinition(required = false, name = "Readiness path", description = "Path (relative to application path) requested by GET on local transport after restart of a batch, next batch is restarted when it responds with 2xx status or readiness timeout is reached.")
+        String restart_rolling_readinessPath();
+
+        @AttributeDefinition(required = false, name = "Readiness timeout", description = "Maximum time waiting for readiness of an application in milliseconds.", type = AttributeType.LONG)
+        long restart_rolling_readinessTimeout() default RESTART_ROLLING_READINESS_TIMEOUT_DEFAULT;
     }
 
     public static final String ALIAS_VALUE = "cxf";
 
     public static final String CONTEXT_KEY = "context";
 
+    /**
+     * Application property selecting bus of the application if applications are distributed across multiple default
+     * CXF buses. Applications of the same group are running on the same bus, integer values are used as bus index.
+     */
+    public static final String BUS_GROUP_KEY = "cxf.bus.group";
+
+    /**
+     * Application property defining restart order, applications with higher priority (integer value, default: 0) are
+     * restarted first.
+     */
+    public static final String PRIORITY_KEY = "jaxrs.application.priority";
+
     private static final String APPLICATION_PATH = "applicationPath";
 
+    private static final int DRAIN_TIMEOUT_DEFAULT = 5000;
+    private static final int JOURNAL_SIZE_DEFAULT = 256;
+    private static final int RESTART_THRESHOLD_DEFAULT = 10;
+    private static final long RESTART_WINDOW_DEFAULT = 60000L;
+    private static final long RESTART_BACKOFF_INITIAL_DEFAULT = 1000L;
+    private static final long RESTART_BACKOFF_MAX_DEFAULT = 60000L;
+    private static final int RESTART_ROLLING_MAX_UNAVAILABLE_DEFAULT = 1;
+    private static final long RESTART_ROLLING_READINESS_TIMEOUT_DEFAULT = 10000L;
+    private static final long READINESS_POLL_INTERVAL = 100L;
+    private static final long LIFECYCLE_TERMINATION_TIMEOUT = 10000L;
+
+    private static final String JOURNAL_MBEAN_NAME = "hu.blackbelt.jaxrs:type=RestartJournal";
+
     private final Map<Long, Server> servers = new ConcurrentHashMap<>();
     private final Map<Long, Application> applications = new ConcurrentHashMap<>();
     private final Map<Long, Bundle> applicationBundles = new ConcurrentHashMap<>();
@@ -80,10 +193,61 @@ public class CxfServerManager implements ServerManager {
     private ConfigurationAdmin configAdmin;
 
     private static final String DEFAULT_BUS_ID = "DEFAULT_CXF_BUS_FOR_JAXRS_APPLICATIONS";
+    private static final String SHARD_BUS_ID_PREFIX = DEFAULT_BUS_ID + "_";
     private Configuration cxfContextConfig;
 
+    // additional default CXF contexts (shards), index 0 is the default CXF context
+    private final List<Configuration> shardConfigs = new ArrayList<>();
+    private final Map<String, CxfContext> shardContexts = new ConcurrentHashMap<>();
+    private final Map<String, Object> shardLastChanged = new ConcurrentHashMap<>();
+    private final Map<Long, String> applicationShards = new ConcurrentHashMap<>();
+    private volatile int busShards = 1;
+
+    // applications published on local transport
+    private volatile boolean localTransportEnabled;
+    private final Map<Long, Server> localServers = new ConcurrentHashMap<>();
+    private final Map<Long, Bus> localBuses = new ConcurrentHashMap<>();
+    private final Map<String, Long> localApplicationIds = new ConcurrentHashMap<>();
+
+    // in-flight requests of applications
+    private final Map<Long, DrainInterceptor> drainInterceptors = new ConcurrentHashMap<>();
+    private volatile long drainTimeout = DRAIN_TIMEOUT_DEFAULT;
+
+    private final BoundedRestartJournal journal = new BoundedRestartJournal(JOURNAL_SIZE_DEFAULT);
+    private ObjectName journalObjectName;
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY)
+    private volatile EventAdmin eventAdmin;
+
+    private final RestartGuard restartGuard = new RestartGuard(new RestartGuardCallback());
+
+    // applications requested to be started (updated by the caller, lifecycle operations may be pending)
+    private final Set<Long> startedApplications = ConcurrentHashMap.newKeySet();
+
+    // start, stop and restart operations are run by a single thread, waiting for drains outside of OSGi callbacks
+    private volatile Thread lifecycleThread;
+    private final ExecutorService lifecycleExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "jaxrs-application-lifecycle");
+        thread.setDaemon(true);
+        lifecycleThread = thread;
+        return thread;
+    });
+
+    // rolling restart
+    private volatile boolean rollingRestart;
+    private volatile int rollingMaxUnavailable = RESTART_ROLLING_MAX_UNAVAILABLE_DEFAULT;
+    private volatile long rollingPause;
+    private volatile String rollingReadinessPath;
+    private volatile long rollingReadinessTimeout = RESTART_ROLLING_READINESS_TIMEOUT_DEFAULT;
+
     @Activate
     void start(final Config config) {
+        localTransportEnabled = config.local_transport_enabled();
+        drainTimeout = Math.max(0, config.drain_timeout());
+        journal.setCapacity(config.journal_size());
+        restartGuard.configure(config.restart_threshold(), config.restart_window(), config.restart_backoff_initial(), config.restart_backoff_max());
+        configureRollingRestart(config);
+        registerJournalMBean();
         try {
             cxfContextConfig = configAdmin.createFactoryConfiguration(CxfContext.class.getName(), "?");
             final Dictionary<String, Object> properties = setProperties(config, new Hashtable<>());
@@ -92,15 +256,81 @@ public class CxfServerManager implements ServerManager {
         } catch (IOException ex) {
             log.error("Unable to create default CXF bus");
         }
+        updateShards(config);
     }
 
     @Modified
     void update(final Config config) {
+        drainTimeout = Math.max(0, config.drain_timeout());
+        journal.setCapacity(config.journal_size());
+        restartGuard.configure(config.restart_threshold(), config.restart_window(), config.restart_backoff_initial(), config.restart_backoff_max());
+        configureRollingRestart(config);
+        if (localTransportEnabled != config.local_transport_enabled()) {
+            // applications are published on local transport (or removed from it) on next restart
+            localTransportEnabled = config.local_transport_enabled();
+            log.info("Local transport of JAX-RS applications {}, applied on restart of applications", localTransportEnabled ? "enabled" : "disabled");
+        }
         try {
             cxfContextConfig.update(setProperties(config, cxfContextConfig.getProperties()));
         } catch (IOException ex) {
             log.error("Unable to update default CXF bus");
         }
+        updateShards(config);
+        rebalanceApplications(RestartCause.of(RestartCause.Trigger.SERVER_MANAGER, null, "number of default CXF buses changed"));
+    }
+
+    private void configureRollingRestart(final Config config) {
+        rollingRestart = config.restart_rolling();
+        rollingMaxUnavailable = Math.max(1, config.restart_rolling_maxUnavailable());
+        rollingPause = Math.max(0L, config.restart_rolling_pause());
+        final String readinessPath = config.restart_rolling_readinessPath();
+        rollingReadinessPath = readinessPath != null && !readinessPath.trim().isEmpty() ? readinessPath.trim() : null;
+        rollingReadinessTimeout = Math.max(0L, config.restart_rolling_readinessTimeout());
+        if (rollingReadinessPath != null && !config.local_transport_enabled()) {
+            log.warn("Readiness path of rolling restart is set but local transport is disabled, readiness of restarted applications is not checked: {}", rollingReadinessPath);
+        }
+    }
+
+    private synchronized void updateShards(final Config config) {
+        final int shards = Math.max(1, config.bus_shards());
+        for (int i = 1; i < shards; i++) {
+            try {
+                if (i <= shardConfigs.size()) {
+                    final Configuration shardConfig = shardConfigs.get(i - 1);
+                    shardConfig.update(setShardProperties(config, shardConfig.getProperties(), i));
+                } else {
+                    final Configuration shardConfig = configAdmin.createFactoryConfiguration(CxfContext.class.getName(), "?");
+                    final Dictionary<String, Object> properties = setShardProperties(config, new Hashtable<>(), i);
+                    properties.put("busId", SHARD_BUS_ID_PREFIX + i);
+                    shardConfig.update(properties);
+                    shardConfigs.add(shardConfig);
+                }
+            } catch (IOException ex) {
+                log.error("Unable to update default CXF bus: " + SHARD_BUS_ID_PREFIX + i, ex);
+            }
+        }
+        while (shardConfigs.size() > shards - 1) {
+            final Configuration shardConfig = shardConfigs.remove(shardConfigs.size() - 1);
+            try {
+                shardConfig.delete();
+            } catch (IOException ex) {
+                log.error("Unable to delete default CXF bus: " + shardConfig.getPid(), ex);
+            }
+        }
+        if (busShards != shards) {
+            log.info("Number of default CXF buses: {}", shards);
+        }
+        busShards = shards;
+    }
+
+    private static Dictionary<String, Object> setShardProperties(final Config config, final Dictionary<String, Object> properties, final int index) {
+        setProperties(config, properties);
+        if (CxfContext.TransportType.NETTY.name().equalsIgnoreCase(config.transport_type())) {
+            // embedded HTTP servers of buses are listening on subsequent ports
+            final int port = config.transport_netty_port() > 0 ? config.transport_netty_port() : CxfContext.TRANSPORT_NETTY_PORT_DEFAULT;
+            properties.put("transport.netty.port", port + index);
+        }
+        return properties;
     }
 
     private static Dictionary<String, Object> setProperties(final Config config, final Dictionary<String, Object> properties) {
@@ -121,13 +351,108 @@ public class CxfServerManager implements ServerManager {
         } else {
             properties.remove("interceptors.fault.components");
         }
+        if (config.executor_type() != null) {
+            properties.put("executor.type", config.executor_type().name());
+        } else {
+            properties.remove("executor.type");
+        }
+        if (config.executor_pool_size() > 0) {
+            properties.put("executor.pool.size", config.executor_pool_size());
+        } else {
+            properties.remove("executor.pool.size");
+        }
+        if (config.executor_queue_size() > 0) {
+            properties.put("executor.queue.size", config.executor_queue_size());
+        } else {
+            properties.remove("executor.queue.size");
+        }
+        if (config.transport_type() != null) {
+            properties.put("transport.type", config.transport_type());
+        } else {
+            properties.remove("transport.type");
+        }
+        if (config.transport_netty_host() != null) {
+            properties.put("transport.netty.host", config.transport_netty_host());
+        } else {
+            properties.remove("transport.netty.host");
+        }
+        if (config.transport_netty_port() > 0) {
+            properties.put("transport.netty.port", config.transport_netty_port());
+        } else {
+            properties.remove("transport.netty.port");
+        }
+        if (config.transport_netty_threads() > 0) {
+            properties.put("transport.netty.threads", config.transport_netty_threads());
+        } else {
+            properties.remove("transport.netty.threads");
+        }
+        if (config.upload_memoryThreshold() > 0) {
+            properties.put("upload.memoryThreshold", config.upload_memoryThreshold());
+        } else {
+            properties.remove("upload.memoryThreshold");
+        }
+        if (config.upload_directory() != null) {
+            properties.put("upload.directory", config.upload_directory());
+        } else {
+            properties.remove("upload.directory");
+        }
+        if (config.upload_maxPartSize() > 0) {
+            properties.put("upload.maxPartSize", config.upload_maxPartSize());
+        } else {
+            properties.remove("upload.maxPartSize");
+        }
+        if (config.upload_maxRequestSize() > 0) {
+            properties.put("upload.maxRequestSize", config.upload_maxRequestSize());
+        } else {
+            properties.remove("upload.maxRequestSize");
+        }
+        if (config.upload_maxInFlightSize() > 0) {
+            properties.put("upload.maxInFlightSize", config.upload_maxInFlightSize());
+        } else {
+            properties.remove("upload.maxInFlightSize");
+        }
         return properties;
     }
 
     @Deactivate
     void stop() {
         unregister("(&(service.factoryPid=" + CxfContext.class.getName() + ")(busId=" + DEFAULT_BUS_ID + "))");
+        unregister("(&(service.factoryPid=" + CxfContext.class.getName() + ")(busId=" + SHARD_BUS_ID_PREFIX + "*))");
         cxfContextConfig = null;
+        synchronized (this) {
+            shardConfigs.clear();
+        }
+        unregisterJournalMBean();
+        restartGuard.close();
+        lifecycleExecutor.shutdown();
+        try {
+            if (!lifecycleExecutor.awaitTermination(Math.max(drainTimeout, LIFECYCLE_TERMINATION_TIMEOUT), TimeUnit.MILLISECONDS)) {
+                log.warn("JAX-RS application lifecycle operations are not completed");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void registerJournalMBean() {
+        try {
+            final ObjectName objectName = new ObjectName(JOURNAL_MBEAN_NAME);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(journal.asMBean(), RestartJournalMBean.class), objectName);
+            journalObjectName = objectName;
+        } catch (JMException ex) {
+            log.warn("Unable to register restart journal MBean: " + JOURNAL_MBEAN_NAME, ex);
+        }
+    }
+
+    private void unregisterJournalMBean() {
+        if (journalObjectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(journalObjectName);
+            } catch (JMException ex) {
+                log.warn("Unable to unregister restart journal MBean: " + JOURNAL_MBEAN_NAME, ex);
+            }
+            journalObjectName = null;
+        }
     }
 
     private void unregister(final String filter) {
@@ -153,10 +478,47 @@ public class CxfServerManager implements ServerManager {
         }
     }
 
+    /**
+     * Run a lifecycle operation on the lifecycle thread. Operations are run in order of submission, start and restart
+     * operations never block the caller (OSGi service event delivery).
+     *
+     * @param operation name of the operation (for logging)
+     * @param task      operation
+     * @return future of the operation, <code>null</code> if server manager is stopped
+     */
+    private Future<?> submit(final String operation, final Runnable task) {
+        try {
+            return lifecycleExecutor.submit(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException ex) {
+                    log.error("Unable to " + operation + " JAX-RS application(s)", ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            log.warn("Server manager is stopped, unable to {} JAX-RS application(s)", operation);
+            return null;
+        }
+    }
+
     @Override
-    public synchronized void startApplication(final Long applicationId, final Application application, final Bundle applicationBundle, final List<Object> providers) {
+    public void startApplication(final Long applicationId, final Application application, final Bundle applicationBundle, final List<Object> providers, final RestartCause cause) {
+        if (!startedApplications.add(applicationId) && !restartGuard.allowStart(applicationId, application, applicationBundle, providers, cause)) {
+            // starting a running application is a restart (i.e. JAX-RS provider components are flapping), arguments are
+            // kept by the guard for the deferred restart
+            log.debug("Restart of JAX-RS application is deferred, service.id = {}, cause: {}", applicationId, cause);
+            return;
+        }
+        submit("start", () -> {
+            final long startTime = System.nanoTime();
+            doStartApplication(applicationId, application, applicationBundle, providers);
+            record(Operation.START, cause, Collections.singletonMap(applicationId, getApplicationPath(application)), startTime);
+        });
+    }
+
+    private void doStartApplication(final Long applicationId, final Application application, final Bundle applicationBundle, final List<Object> providers) {
         if (servers.containsKey(applicationId)) {
-            stopApplication(applicationId);
+            doStopApplication(applicationId);
         }
 
         applications.put(applicationId, application);
@@ -176,6 +538,7 @@ public class CxfServerManager implements ServerManager {
 
         final RuntimeDelegate delegate = RuntimeDelegate.getInstance();
         final JAXRSServerFactoryBean serverFactory = delegate.createEndpoint(application, JAXRSServerFactoryBean.class);
+        bindStaticContent(serverFactory);
 
         final Map<String, Object> properties = application.getProperties();
         final String applicationPath = properties != null ? (String) properties.get(APPLICATION_PATH) : null;
@@ -184,7 +547,7 @@ public class CxfServerManager implements ServerManager {
         } else if (!application.getClass().isAnnotationPresent(ApplicationPath.class)) {
             log.warn("No @ApplicationPath found on component, service.id = " + applicationId);
         }
-        final CxfContext cxfContext;
+        CxfContext cxfContext;
         if (properties != null && properties.containsKey(BasicApplication.CONTEXT_PROPERTY_KEY)) {
             cxfContext = (CxfContext) properties.get(BasicApplication.CONTEXT_PROPERTY_KEY);
         } else if (properties != null && properties.containsKey(CONTEXT_KEY)) {
@@ -194,18 +557,39 @@ public class CxfServerManager implements ServerManager {
         } else {
             cxfContext = null;
         }
+        if (cxfContext != null && DEFAULT_BUS_ID.equals(cxfContext.getBusId())) {
+            // application is bound to the default CXF context, select bus if applications are distributed
+            final String busId = getAvailableShardBusId(application);
+            final CxfContext shardContext = shardContexts.get(busId);
+            if (shardContext != null) {
+                cxfContext = shardContext;
+                applicationShards.put(applicationId, busId);
+            } else {
+                applicationShards.put(applicationId, DEFAULT_BUS_ID);
+            }
+        }
         if (cxfContext != null) {
             serverFactory.setBus(cxfContext.getBus());
 
+            final String baseAddress = cxfContext.getBaseAddress();
+            if (baseAddress != null && serverFactory.getAddress() != null) {
+                // embedded HTTP server of the context requires absolute address
+                final String address = serverFactory.getAddress();
+                serverFactory.setAddress(baseAddress + (address.startsWith("/") ? address : "/" + address));
+            }
+
+            // IN, OUT and FAULT interceptors are read from the same snapshot
+            final InterceptorChains interceptorChains = cxfContext.getInterceptorChains();
             if (log.isTraceEnabled()) {
-                log.trace("IN interceptors: {}", cxfContext.getInInterceptors());
-                log.trace("OUT interceptors: {}", cxfContext.getOutInterceptors());
-                log.trace("FAULT interceptors: {}", cxfContext.getFaultInterceptors());
+                log.trace("Interceptor chains (version {}) of application, service.id = {}", interceptorChains.getVersion(), applicationId);
+                log.trace("IN interceptors: {}", interceptorChains.getInInterceptors());
+                log.trace("OUT interceptors: {}", interceptorChains.getOutInterceptors());
+                log.trace("FAULT interceptors: {}", interceptorChains.getFaultInterceptors());
             }
 
-            serverFactory.setInInterceptors(cxfContext.getInInterceptors());
-            serverFactory.setOutInterceptors(cxfContext.getOutInterceptors());
-            serverFactory.setOutFaultInterceptors(cxfContext.getFaultInterceptors());
+            serverFactory.setInInterceptors(interceptorChains.getInInterceptors());
+            serverFactory.setOutInterceptors(interceptorChains.getOutInterceptors());
+            serverFactory.setOutFaultInterceptors(interceptorChains.getFaultInterceptors());
         }
 
         final List<Object> _providers;
@@ -218,54 +602,527 @@ public class CxfServerManager implements ServerManager {
         applicationProviders.put(applicationId, _providers);
 
         final Server server = serverFactory.create();
+        final DrainInterceptor drainInterceptor = new DrainInterceptor();
+        server.getEndpoint().getInInterceptors().add(drainInterceptor);
         if (log.isDebugEnabled()) {
             log.debug("Starting JAX-RS application, service.id = " + applicationId);
         }
+        // invocations are handed off before the endpoint is started so all requests are using the executor
+        if (cxfContext != null && cxfContext.getExecutor() != null) {
+            server.getEndpoint().getInInterceptors().add(new InvocationHandOffInterceptor(cxfContext.getExecutor()));
+        }
         server.start();
+        drainInterceptors.put(applicationId, drainInterceptor);
 
         servers.put(applicationId, server);
+
+        if (localTransportEnabled) {
+            startLocalServer(applicationId, application, cxfContext, _providers, drainInterceptor);
+        }
+    }
+
+    /**
+     * Bind static content resources to their (literal) prefix instead of the application root.
+     *
+     * @param serverFactory server factory of the application
+     */
+    private static void bindStaticContent(final JAXRSServerFactoryBean serverFactory) {
+        for (final ClassResourceInfo resourceInfo : serverFactory.getServiceFactory().getClassResourceInfo()) {
+            if (resourceInfo.getServiceClass() == StaticContentResource.class && resourceInfo.getResourceProvider() != null) {
+                final StaticContentResource resource = (StaticContentResource) resourceInfo.getResourceProvider().getInstance(null);
+                resourceInfo.setURITemplate(URITemplate.createTemplate(resource.getPrefix()));
+            }
+        }
+    }
+
+    private void startLocalServer(final Long applicationId, final Application application, final CxfContext cxfContext, final List<Object> providers, final DrainInterceptor drainInterceptor) {
+        final String applicationPath = getApplicationPath(application);
+        if (applicationPath == null) {
+            return;
+        }
+        final String localPath = normalizeApplicationPath(applicationPath);
+        try {
+            final Bus bus = cxfContext != null ? cxfContext.getBus() : BusFactory.getDefaultBus();
+            LocalTransport.register(bus);
+
+            final JAXRSServerFactoryBean serverFactory = RuntimeDelegate.getInstance().createEndpoint(application, JAXRSServerFactoryBean.class);
+            bindStaticContent(serverFactory);
+            serverFactory.setBus(bus);
+            LocalTransport.configure(serverFactory, localPath);
+            if (cxfContext != null) {
+                final InterceptorChains interceptorChains = cxfContext.getInterceptorChains();
+                serverFactory.setInInterceptors(interceptorChains.getInInterceptors());
+                serverFactory.setOutInterceptors(interceptorChains.getOutInterceptors());
+                serverFactory.setOutFaultInterceptors(interceptorChains.getFaultInterceptors());
+            }
+            serverFactory.setProviders(providers);
+
+            final Server server = serverFactory.create();
+            // requests of local clients are drained too
+            server.getEndpoint().getInInterceptors().add(drainInterceptor);
+            server.start();
+            localServers.put(applicationId, server);
+            localBuses.put(applicationId, bus);
+            localApplicationIds.put(localPath, applicationId);
+            if (log.isDebugEnabled()) {
+                log.debug("JAX-RS application published on local transport: {}, service.id = {}", localPath, applicationId);
+            }
+        } catch (RuntimeException | LinkageError ex) {
+            log.warn("Unable to publish JAX-RS application on local transport, service.id = " + applicationId, ex);
+        }
+    }
+
+    private void stopLocalServer(final Long applicationId) {
+        final Server server = localServers.remove(applicationId);
+        localBuses.remove(applicationId);
+        localApplicationIds.values().removeIf(applicationId::equals);
+        if (server != null) {
+            server.stop();
+            server.destroy();
+        }
+    }
+
+    private static String getApplicationPath(final Application application) {
+        if (application == null) {
+            return null;
+        }
+        final Map<String, Object> properties = application.getProperties();
+        return properties != null && properties.get(APPLICATION_PATH) != null
+                ? (String) properties.get(APPLICATION_PATH)
+                : application.getClass().isAnnotationPresent(ApplicationPath.class) ? application.getClass().getAnnotation(ApplicationPath.class).value() : null;
+    }
+
+    private static String normalizeApplicationPath(final String applicationPath) {
+        String path = applicationPath.trim();
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return "/" + path;
+    }
+
+    private Long getLocalApplicationId(final String applicationPath) {
+        final Long applicationId = applicationPath != null ? localApplicationIds.get(normalizeApplicationPath(applicationPath)) : null;
+        if (applicationId == null) {
+            throw new IllegalArgumentException("JAX-RS application is not available on local transport: " + applicationPath);
+        }
+        return applicationId;
+    }
+
+    @Override
+    public boolean isAvailable(final String applicationPath) {
+        return applicationPath != null && localApplicationIds.containsKey(normalizeApplicationPath(applicationPath));
     }
 
     @Override
-    public synchronized void updateApplicationResources(final Long applicationId, final Application application, final List<Object> providers) {
+    public String resolveApplicationPath(final String path) {
+        if (path == null) {
+            return null;
+        }
+        final String normalizedPath = normalizeApplicationPath(path);
+        String result = null;
+        for (final String applicationPath : localApplicationIds.keySet()) {
+            final boolean matching = "/".equals(applicationPath)
+                    || normalizedPath.equals(applicationPath)
+                    || normalizedPath.startsWith(applicationPath + "/");
+            if (matching && (result == null || applicationPath.length() > result.length())) {
+                result = applicationPath;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public WebClient createWebClient(final String applicationPath) {
+        final Long applicationId = getLocalApplicationId(applicationPath);
+        return LocalTransport.createWebClient(localBuses.get(applicationId), normalizeApplicationPath(applicationPath), applicationProviders.get(applicationId));
+    }
+
+    @Override
+    public <T> T createProxy(final String applicationPath, final Class<T> resourceClass) {
+        final Long applicationId = getLocalApplicationId(applicationPath);
+        return LocalTransport.createProxy(localBuses.get(applicationId), normalizeApplicationPath(applicationPath), applicationProviders.get(applicationId), resourceClass);
+    }
+
+    @Override
+    public void updateApplicationResources(final Long applicationId, final Application application, final List<Object> providers, final RestartCause cause) {
         log.trace("UPDATE JAX-RS application resources: " + applicationId);
         //applications.put(applicationId, application);
-        restartApplications(Collections.singleton(applicationId), Collections.singletonMap(applicationId, providers));
+        final String busId = applicationShards.get(applicationId);
+        if (cause != null && cause.getTrigger() == RestartCause.Trigger.CXF_CONTEXT && busId != null && !DEFAULT_BUS_ID.equals(busId)) {
+            // shard contexts are configured like the default one, applications moved to a shard are restarted by its change
+            log.debug("Restart of JAX-RS application running on CXF bus {} is skipped, service.id = {}, cause: {}", busId, applicationId, cause);
+            return;
+        }
+        restartApplications(Collections.singleton(applicationId), Collections.singletonMap(applicationId, providers), cause);
     }
 
     @Override
-    public synchronized Application stopApplication(final Long applicationId) {
+    public Application stopApplication(final Long applicationId, final RestartCause cause) {
+        // new requests are rejected immediately, running ones are drained by the lifecycle thread
+        final DrainInterceptor drainInterceptor = drainInterceptors.get(applicationId);
+        if (drainInterceptor != null) {
+            drainInterceptor.startDraining();
+        }
+        // restart history is kept until the application is removed so stop/start cycles are counted too
+        startedApplications.remove(applicationId);
+        final Application application = applications.get(applicationId);
+        // caller is waiting for the stop (i.e. application bundle is stopping), queued operations are run before it
+        if (Thread.currentThread() == lifecycleThread) {
+            stop(applicationId, cause);
+        } else {
+            await(submit("stop", () -> stop(applicationId, cause)), "stop");
+        }
+        return application;
+    }
+
+    private static void await(final Future<?> future, final String operation) {
+        if (future == null) {
+            return;
+        }
+        try {
+            future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting for {} of JAX-RS application(s)", operation);
+        } catch (ExecutionException ex) {
+            log.error("Unable to " + operation + " JAX-RS application(s)", ex);
+        }
+    }
+
+    @Override
+    public void removeApplication(final Long applicationId) {
+        restartGuard.remove(applicationId);
+    }
+
+    private void stop(final Long applicationId, final RestartCause cause) {
+        final long startTime = System.nanoTime();
+        final Map<Long, String> affectedApplications = getApplicationPaths(Collections.singleton(applicationId));
+        doStopApplication(applicationId);
+        record(Operation.STOP, cause, affectedApplications, startTime);
+    }
+
+    private Application doStopApplication(final Long applicationId) {
         log.trace("STOP JAX-RS application: " + applicationId);
         final Server server = servers.remove(applicationId);
         if (server != null) {
+            drain(applicationId);
             if (log.isDebugEnabled()) {
                 log.debug("Stopping JAX-RS application, service.id = " + applicationId);
             }
             server.stop();
             server.destroy();
         }
+        stopLocalServer(applicationId);
         applicationBundles.remove(applicationId);
+        applicationShards.remove(applicationId);
         return applications.remove(applicationId);
     }
 
+    /**
+     * Stop taking new requests of an application and wait for running ones (up to drain timeout).
+     *
+     * @param applicationId application ID
+     */
+    private void drain(final Long applicationId) {
+        final DrainInterceptor drainInterceptor = drainInterceptors.remove(applicationId);
+        if (drainInterceptor == null) {
+            return;
+        }
+        final long startTime = System.nanoTime();
+        int running;
+        try {
+            running = drainInterceptor.drain(drainTimeout);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            running = drainInterceptor.getInFlight();
+        }
+        final long drainTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        if (running > 0) {
+            log.warn("JAX-RS application is not drained in {} ms, {} request(s) are cut off, service.id = {}", drainTime, running, applicationId);
+        } else {
+            log.info("JAX-RS application drained in {} ms, service.id = {}", drainTime, applicationId);
+        }
+    }
+
     @Override
-    public void restartApplications(final Collection<Long> applicationIds, final Map<Long, List<Object>> providers) {
+    public void restartApplications(final Collection<Long> applicationIds, final Map<Long, List<Object>> providers, final RestartCause cause) {
+        final List<Long> allowedApplicationIds = new ArrayList<>();
+        applicationIds.forEach(applicationId -> {
+            if (restartGuard.allowRestart(applicationId, providers != null ? providers.get(applicationId) : null, cause)) {
+                allowedApplicationIds.add(applicationId);
+            } else if (log.isDebugEnabled()) {
+                log.debug("Restart of JAX-RS application is deferred, service.id = {}, cause: {}", applicationId, cause);
+            }
+        });
+        if (!allowedApplicationIds.isEmpty()) {
+            submit("restart", () -> doRestartApplications(allowedApplicationIds, providers, cause));
+        }
+    }
+
+    private void doRestartApplications(final Collection<Long> applicationIds, final Map<Long, List<Object>> providers, final RestartCause cause) {
+        final long startTime = System.nanoTime();
+        final Map<Long, String> affectedApplications = getApplicationPaths(applicationIds);
+
+        // critical applications are restarted first
+        final List<Long> orderedApplicationIds = new ArrayList<>(applicationIds);
+        orderedApplicationIds.sort(Comparator.comparingInt((Long applicationId) -> getPriority(applications.get(applicationId))).reversed());
+
+        // applications are restarted one by one (or by batches of rolling restart) so the others keep serving
+        final int batchSize = rollingRestart ? rollingMaxUnavailable : 1;
+        for (int from = 0; from < orderedApplicationIds.size(); from += batchSize) {
+            final List<Long> batch = orderedApplicationIds.subList(from, Math.min(from + batchSize, orderedApplicationIds.size()));
+            if (from > 0 && rollingRestart && rollingPause > 0) {
+                try {
+                    Thread.sleep(rollingPause);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    log.warn("Rolling restart of JAX-RS applications interrupted, pause is skipped");
+                }
+            }
+            restartBatch(batch, providers);
+        }
+        record(Operation.RESTART, cause, affectedApplications, startTime);
+    }
+
+    private void restartBatch(final List<Long> applicationIds, final Map<Long, List<Object>> providers) {
+        // stop taking new requests of the applications of the batch at once so they are drained in parallel
+        applicationIds.forEach(applicationId -> {
+            final DrainInterceptor drainInterceptor = drainInterceptors.get(applicationId);
+            if (drainInterceptor != null) {
+                drainInterceptor.startDraining();
+            }
+        });
         applicationIds.forEach(applicationId -> {
             log.trace("RESTART JAX-RS application: " + applicationId);
-            final Application application = stopApplication(applicationId);
-            startApplication(applicationId, application, applicationBundles.get(applicationId), providers != null ? providers.get(applicationId) : null);
+            final Bundle applicationBundle = applicationBundles.get(applicationId);
+            final Application application = doStopApplication(applicationId);
+            if (application != null) {
+                doStartApplication(applicationId, application, applicationBundle, providers != null ? providers.get(applicationId) : null);
+            }
         });
+        if (rollingRestart && rollingReadinessPath != null) {
+            // next batch is restarted even if an application is not ready (after timeout) but it is reported
+            applicationIds.stream()
+                    .filter(applicationId -> applications.containsKey(applicationId) && !awaitReady(applicationId))
+                    .forEach(applicationId -> log.warn("JAX-RS application is not ready after restart, service.id = {}", applicationId));
+        }
+    }
+
+    /**
+     * Wait for an application to respond to readiness requests (GET of readiness path on local transport).
+     *
+     * @param applicationId application ID
+     * @return <code>true</code> if application is ready or readiness cannot be checked (application is not published on
+     * local transport), <code>false</code> if readiness timeout is reached
+     */
+    private boolean awaitReady(final Long applicationId) {
+        final String applicationPath = getApplicationPath(applications.get(applicationId));
+        if (applicationPath == null || !isAvailable(applicationPath)) {
+            log.debug("JAX-RS application is not published on local transport, readiness is not checked, service.id = {}", applicationId);
+            return true;
+        }
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(rollingReadinessTimeout);
+        while (true) {
+            if (isReady(applicationPath)) {
+                return true;
+            } else if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            try {
+                Thread.sleep(READINESS_POLL_INTERVAL);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    private boolean isReady(final String applicationPath) {
+        try {
+            final Response response = createWebClient(applicationPath).path(rollingReadinessPath).get();
+            try {
+                return response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL;
+            } finally {
+                response.close();
+            }
+        } catch (RuntimeException ex) {
+            log.trace("Readiness request failed: " + applicationPath, ex);
+            return false;
+        }
+    }
+
+    private static int getPriority(final Application application) {
+        final Map<String, Object> properties = application != null ? application.getProperties() : null;
+        final Object priority = properties != null ? properties.get(PRIORITY_KEY) : null;
+        if (priority == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(String.valueOf(priority).trim());
+        } catch (NumberFormatException ex) {
+            log.warn("Invalid JAX-RS application priority: {}", priority);
+            return 0;
+        }
     }
 
     @Override
-    public void restartAllApplications(final Map<Long, List<Object>> providers) {
+    public void restartAllApplications(final Map<Long, List<Object>> providers, final RestartCause cause) {
         log.trace("RESTART all JAX-RS applications");
-        restartApplications(new ArrayList<>(applications.keySet()), providers);
+        restartApplications(new ArrayList<>(applications.keySet()), providers, cause);
+    }
+
+    private class RestartGuardCallback implements RestartGuard.Callback {
+
+        @Override
+        public void restart(final Long applicationId, final Application application, final Bundle applicationBundle, final List<Object> providers, final RestartCause cause) {
+            submit("restart", () -> {
+                if (application != null && startedApplications.contains(applicationId)) {
+                    // deferred start of a modified application
+                    final long startTime = System.nanoTime();
+                    doStartApplication(applicationId, application, applicationBundle, providers);
+                    record(Operation.RESTART, cause, Collections.singletonMap(applicationId, getApplicationPath(application)), startTime);
+                } else if (applications.containsKey(applicationId)) {
+                    doRestartApplications(Collections.singleton(applicationId), providers != null ? Collections.singletonMap(applicationId, providers) : null, cause);
+                }
+            });
+        }
+
+        @Override
+        public void postEvent(final String topic, final Map<String, Object> properties) {
+            final EventAdmin ea = eventAdmin;
+            if (ea != null) {
+                final Map<String, Object> eventProperties = new HashMap<>(properties);
+                final Application application = applications.get((Long) properties.get(RestartGuard.APPLICATION_ID_PROPERTY));
+                final String applicationPath = getApplicationPath(application);
+                if (applicationPath != null) {
+                    eventProperties.put(APPLICATION_PATH, applicationPath);
+                }
+                ea.postEvent(new Event(topic, eventProperties));
+            }
+        }
+    }
+
+    private Map<Long, String> getApplicationPaths(final Collection<Long> applicationIds) {
+        final Map<Long, String> applicationPaths = new TreeMap<>();
+        applicationIds.forEach(applicationId -> applicationPaths.put(applicationId, String.valueOf(getApplicationPath(applications.get(applicationId)))));
+        return applicationPaths;
+    }
+
+    private void record(final Operation operation, final RestartCause cause, final Map<Long, String> affectedApplications, final long startTime) {
+        if (affectedApplications.isEmpty()) {
+            return;
+        }
+        final Entry entry = new Entry(System.currentTimeMillis(), operation, cause != null ? cause : RestartCause.UNKNOWN,
+                Collections.unmodifiableMap(affectedApplications), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        journal.add(entry);
+        if (log.isDebugEnabled()) {
+            log.debug("JAX-RS applications {}: {}", operation, BoundedRestartJournal.format(entry));
+        }
+    }
+
+    @Override
+    public List<Entry> getEntries() {
+        return journal.getEntries();
+    }
+
+    @Override
+    public void clear() {
+        journal.clear();
+    }
+
+    @Reference(service = CxfContext.class, cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC,
+            target = "(busId=" + SHARD_BUS_ID_PREFIX + "*)", updated = "updatedShardContext", unbind = "unbindShardContext")
+    void bindShardContext(final CxfContext shardContext, final Map<String, Object> props) {
+        shardContexts.put(shardContext.getBusId(), shardContext);
+        shardLastChanged.put(shardContext.getBusId(), String.valueOf(props.get(CxfContext.LAST_CHANGED_CONFIGURATION)));
+        rebalanceApplications(RestartCause.of(RestartCause.Trigger.SERVER_MANAGER, (Long) props.get(Constants.SERVICE_ID), "CXF bus " + shardContext.getBusId() + " started"));
+    }
+
+    void updatedShardContext(final CxfContext shardContext, final Map<String, Object> props) {
+        final String lastChanged = String.valueOf(props.get(CxfContext.LAST_CHANGED_CONFIGURATION));
+        final Object previous = shardLastChanged.put(shardContext.getBusId(), lastChanged);
+        if (!Objects.equals(previous, lastChanged)) {
+            // interceptors of the bus have been changed, restart its applications
+            final List<Long> applicationIds = new ArrayList<>();
+            applicationShards.forEach((applicationId, busId) -> {
+                if (Objects.equals(busId, shardContext.getBusId())) {
+                    applicationIds.add(applicationId);
+                }
+            });
+            if (!applicationIds.isEmpty()) {
+                final RestartCause contextCause = RestartCause.fromProperties(props, Collections.emptyMap());
+                restartApplications(applicationIds, null, contextCause != null ? contextCause
+                        : RestartCause.of(RestartCause.Trigger.CXF_CONTEXT, (Long) props.get(Constants.SERVICE_ID), "CXF context " + shardContext.getBusId() + " changed"));
+            }
+        }
+    }
+
+    void unbindShardContext(final CxfContext shardContext) {
+        shardContexts.remove(shardContext.getBusId(), shardContext);
+        shardLastChanged.remove(shardContext.getBusId());
+        rebalanceApplications(RestartCause.of(RestartCause.Trigger.SERVER_MANAGER, null, "CXF bus " + shardContext.getBusId() + " stopped"));
+    }
+
+    /**
+     * Get ID of bus of an application bound to the default CXF context.
+     *
+     * @param application application
+     * @return bus ID by {@link #BUS_GROUP_KEY} property or application path, the default one if it is not available
+     */
+    private String getAvailableShardBusId(final Application application) {
+        final int shards = busShards;
+        if (shards <= 1) {
+            return DEFAULT_BUS_ID;
+        }
+        final Map<String, Object> properties = application.getProperties();
+        final Object group = properties != null ? properties.get(BUS_GROUP_KEY) : null;
+        int index;
+        if (group != null) {
+            try {
+                index = Math.floorMod(Integer.parseInt(String.valueOf(group).trim()), shards);
+            } catch (NumberFormatException ex) {
+                index = Math.floorMod(String.valueOf(group).hashCode(), shards);
+            }
+        } else {
+            // application path of the property or @ApplicationPath annotation
+            index = Math.floorMod(String.valueOf(getApplicationPath(application)).hashCode(), shards);
+        }
+        final String busId = index == 0 ? DEFAULT_BUS_ID : SHARD_BUS_ID_PREFIX + index;
+        return DEFAULT_BUS_ID.equals(busId) || shardContexts.containsKey(busId) ? busId : DEFAULT_BUS_ID;
+    }
+
+    /**
+     * Restart applications that are not running on the selected bus (number of buses is changed or a bus is
+     * started/stopped).
+     *
+     * @param cause cause of rebalancing
+     */
+    private void rebalanceApplications(final RestartCause cause) {
+        final List<Long> applicationIds = new ArrayList<>();
+        applicationShards.forEach((applicationId, busId) -> {
+            final Application application = applications.get(applicationId);
+            if (application != null && !Objects.equals(busId, getAvailableShardBusId(application))) {
+                applicationIds.add(applicationId);
+            }
+        });
+        if (!applicationIds.isEmpty()) {
+            log.debug("Moving JAX-RS applications to other CXF bus: {}", applicationIds);
+            restartApplications(applicationIds, null, cause);
+        }
     }
 
     @Override
     public void shutdown() {
-        final Set<Long> applicationIds = new TreeSet<>(servers.keySet());
-        applicationIds.forEach(this::stopApplication);
+        // all applications are stopped so they are drained in parallel, caller is waiting for the lifecycle thread
+        drainInterceptors.values().forEach(DrainInterceptor::startDraining);
+        final RestartCause cause = RestartCause.of(RestartCause.Trigger.SHUTDOWN, null, "application manager stopped");
+        startedApplications.clear();
+        await(submit("stop", () -> new TreeSet<>(servers.keySet()).forEach(applicationId -> {
+            restartGuard.remove(applicationId);
+            stop(applicationId, cause);
+        })), "stop");
     }
 }
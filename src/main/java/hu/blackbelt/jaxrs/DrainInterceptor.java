@@ -0,0 +1,100 @@
+package hu.blackbelt.jaxrs;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import hu.blackbelt.jaxrs.interceptors.AbstractCompletionInterceptor;
+import org.apache.cxf.interceptor.Fault;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.Phase;
+
+import javax.ws.rs.ServiceUnavailableException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * IN interceptor counting in-flight requests of an application (endpoints of HTTP and local transport), added to
+ * endpoints by {@link CxfServerManager}.
+ *
+ * <p>New requests are rejected with <code>503 Service Unavailable</code> once draining is started so the endpoint can
+ * be destroyed without cutting off running requests. Requests are counted without locking, draining thread is polling
+ * the counter.</p>
+ */
+class DrainInterceptor extends AbstractCompletionInterceptor<Boolean> {
+
+    private static final long RETRY_AFTER_SECONDS = 1L;
+    private static final long DRAIN_POLL_INTERVAL = 10L;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean draining;
+
+    DrainInterceptor() {
+        super(Phase.RECEIVE);
+    }
+
+    @Override
+    protected Boolean onStart(final Message message) throws Fault {
+        if (!draining) {
+            inFlight.incrementAndGet();
+            // draining may be started meanwhile, the request is counted so it is drained or it is rejected here
+            if (!draining) {
+                return Boolean.TRUE;
+            }
+            inFlight.decrementAndGet();
+        }
+        final Fault fault = new Fault(new ServiceUnavailableException("Application is being stopped", RETRY_AFTER_SECONDS));
+        fault.setStatusCode(503);
+        throw fault;
+    }
+
+    @Override
+    protected void onComplete(final Exchange exchange, final Boolean state, final boolean fault) {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Stop taking new requests.
+     */
+    void startDraining() {
+        draining = true;
+    }
+
+    /**
+     * Stop taking new requests and wait for running ones.
+     *
+     * @param timeout timeout in milliseconds
+     * @return number of requests still running after the timeout
+     * @throws InterruptedException if waiting thread is interrupted
+     */
+    int drain(final long timeout) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        draining = true;
+        long remaining;
+        while (inFlight.get() > 0 && (remaining = deadline - System.nanoTime()) > 0) {
+            Thread.sleep(Math.max(1L, Math.min(DRAIN_POLL_INTERVAL, TimeUnit.NANOSECONDS.toMillis(remaining))));
+        }
+        return inFlight.get();
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,75 @@
+package hu.blackbelt.jaxrs;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.Getter;
+import org.apache.cxf.interceptor.Interceptor;
+import org.apache.cxf.message.Message;
+
+import java.util.*;
+
+/**
+ * Immutable snapshot of interceptors of a CXF context.
+ *
+ * <p>Interceptor lists are copied when the snapshot is created and shared by all endpoints of the context, so readers
+ * need no synchronization. A new snapshot with increased version is created on every change. Interceptors are ordered
+ * (by phases and before/after constraints) by the interceptor chain of each message.</p>
+ */
+@Getter
+public final class InterceptorChains {
+
+    public static final InterceptorChains EMPTY = new InterceptorChains(0L, Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+
+    private final long version;
+    private final List<Interceptor<? extends Message>> inInterceptors;
+    private final List<Interceptor<? extends Message>> outInterceptors;
+    private final List<Interceptor<? extends Message>> faultInterceptors;
+
+    private InterceptorChains(final long version, final List<Interceptor<? extends Message>> inInterceptors,
+                              final List<Interceptor<? extends Message>> outInterceptors, final List<Interceptor<? extends Message>> faultInterceptors) {
+        this.version = version;
+        this.inInterceptors = inInterceptors;
+        this.outInterceptors = outInterceptors;
+        this.faultInterceptors = faultInterceptors;
+    }
+
+    /**
+     * Create a new snapshot.
+     *
+     * @param version           version of the snapshot
+     * @param inInterceptors    IN interceptors
+     * @param outInterceptors   OUT interceptors
+     * @param faultInterceptors FAULT (OUT) interceptors
+     * @return interceptor chains
+     */
+    static InterceptorChains create(final long version, final Collection<Interceptor<? extends Message>> inInterceptors,
+                                    final Collection<Interceptor<? extends Message>> outInterceptors, final Collection<Interceptor<? extends Message>> faultInterceptors) {
+        return new InterceptorChains(version,
+                Collections.unmodifiableList(new ArrayList<>(inInterceptors)),
+                Collections.unmodifiableList(new ArrayList<>(outInterceptors)),
+                Collections.unmodifiableList(new ArrayList<>(faultInterceptors)));
+    }
+
+    @Override
+    public String toString() {
+        return "InterceptorChains{version=" + version + ", in=" + inInterceptors + ", out=" + outInterceptors + ", fault=" + faultInterceptors + "}";
+    }
+}
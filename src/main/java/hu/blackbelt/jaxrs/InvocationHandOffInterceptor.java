@@ -0,0 +1,102 @@
+package hu.blackbelt.jaxrs;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.cxf.continuations.Continuation;
+import org.apache.cxf.continuations.ContinuationProvider;
+import org.apache.cxf.interceptor.Fault;
+import org.apache.cxf.interceptor.InterceptorChain;
+import org.apache.cxf.jaxrs.model.OperationResourceInfo;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.AbstractPhaseInterceptor;
+import org.apache.cxf.phase.Phase;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * IN interceptor handing off resource invocations to the invocation executor of a CXF bus, added to HTTP endpoints
+ * by {@link CxfServerManager}.
+ *
+ * <p>The request is suspended by CXF continuation (servlet asynchronous processing) so the transport thread is
+ * released, the rest of the interceptor chain (invocation and response) is resumed by the executor. Invocations are
+ * run by the transport thread if the request can not be suspended (transport without asynchronous support, local
+ * transport, one-way exchanges or asynchronous resource methods) or the executor is rejecting it.</p>
+ */
+@Slf4j
+class InvocationHandOffInterceptor extends AbstractPhaseInterceptor<Message> {
+
+    private static final String HANDED_OFF_KEY = InvocationHandOffInterceptor.class.getName() + ".handedOff";
+
+    private final Executor executor;
+
+    InvocationHandOffInterceptor(final Executor executor) {
+        super(Phase.PRE_INVOKE);
+        this.executor = executor;
+    }
+
+    @Override
+    public void handleMessage(final Message message) throws Fault {
+        // interceptor is called again when the chain is resumed by the executor
+        if (message.containsKey(HANDED_OFF_KEY) || message.getExchange().isOneWay() || isAsynchronous(message)) {
+            return;
+        }
+        final ContinuationProvider continuationProvider = message.get(ContinuationProvider.class);
+        if (continuationProvider == null) {
+            return;
+        }
+        final Continuation continuation;
+        try {
+            continuation = continuationProvider.getContinuation();
+        } catch (IllegalStateException ex) {
+            log.debug("Unable to start asynchronous processing, invocation is run by transport thread", ex);
+            return;
+        }
+        if (continuation == null || !continuation.isNew()) {
+            return;
+        }
+
+        message.put(HANDED_OFF_KEY, Boolean.TRUE);
+        final InterceptorChain chain = message.getInterceptorChain();
+        try {
+            // chain is resumed after the transport thread left it (doIntercept and resume are synchronized)
+            executor.execute(() -> {
+                try {
+                    chain.resume();
+                } finally {
+                    continuationProvider.complete();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            log.trace("Invocation executor is full, invocation is run by transport thread");
+            return;
+        }
+        // suspending the continuation suspends the chain, transport thread is returning after this interceptor
+        continuation.suspend(0);
+    }
+
+    private static boolean isAsynchronous(final Message message) {
+        final OperationResourceInfo ori = message.getExchange().get(OperationResourceInfo.class);
+        return ori != null && (ori.isAsync() || CompletionStage.class.isAssignableFrom(ori.getMethodToInvoke().getReturnType()));
+    }
+}
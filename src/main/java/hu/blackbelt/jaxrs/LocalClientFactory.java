@@ -0,0 +1,71 @@
+package hu.blackbelt.jaxrs;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.cxf.jaxrs.client.WebClient;
+
+/**
+ * Factory of clients calling JAX-RS applications hosted by the same JVM over CXF local transport.
+ *
+ * <p>Calls are dispatched directly to the local endpoint of the application (without sockets and HTTP), all
+ * providers, filters and interceptors of the application are applied. Clients are using message body readers and
+ * writers of the application only. Applications are published on local transport only if it is enabled on
+ * {@link CxfServerManager}.</p>
+ */
+public interface LocalClientFactory {
+
+    /**
+     * Check if an application is available on local transport.
+     *
+     * @param applicationPath application path
+     * @return <code>true</code> if local clients can be created for the application
+     */
+    boolean isAvailable(String applicationPath);
+
+    /**
+     * Find the application serving a path.
+     *
+     * @param path absolute path of a resource (i.e. <code>/api/users/1</code>)
+     * @return path of the application (longest matching one) available on local transport, <code>null</code> if there
+     * is no matching application
+     */
+    String resolveApplicationPath(String path);
+
+    /**
+     * Create a web client of a local application.
+     *
+     * @param applicationPath application path
+     * @return web client, paths of resources are relative to the application path
+     * @throws IllegalArgumentException if application is not available on local transport
+     */
+    WebClient createWebClient(String applicationPath);
+
+    /**
+     * Create a proxy of a resource interface (or class) of a local application.
+     *
+     * @param applicationPath application path
+     * @param resourceClass   resource interface or class
+     * @param <T>             type of the resource
+     * @return proxy sending calls over local transport
+     * @throws IllegalArgumentException if application is not available on local transport
+     */
+    <T> T createProxy(String applicationPath, Class<T> resourceClass);
+}
@@ -0,0 +1,127 @@
+package hu.blackbelt.jaxrs;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.BusException;
+import org.apache.cxf.jaxrs.JAXRSServerFactoryBean;
+import org.apache.cxf.jaxrs.client.JAXRSClientFactoryBean;
+import org.apache.cxf.jaxrs.client.WebClient;
+import org.apache.cxf.transport.ConduitInitiatorManager;
+import org.apache.cxf.transport.DestinationFactoryManager;
+import org.apache.cxf.transport.local.LocalConduit;
+import org.apache.cxf.transport.local.LocalTransportFactory;
+
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.WriterInterceptor;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * CXF local transport support. Local transport classes are referenced by this class only, CXF local transport is an
+ * optional dependency.
+ */
+final class LocalTransport {
+
+    static final String ADDRESS_PREFIX = "local://";
+
+    private LocalTransport() {
+    }
+
+    /**
+     * Register local transport factory on a bus if it is not registered yet.
+     *
+     * @param bus CXF bus
+     */
+    static void register(final Bus bus) {
+        final DestinationFactoryManager destinationFactoryManager = bus.getExtension(DestinationFactoryManager.class);
+        final ConduitInitiatorManager conduitInitiatorManager = bus.getExtension(ConduitInitiatorManager.class);
+        try {
+            destinationFactoryManager.getDestinationFactory(LocalTransportFactory.TRANSPORT_ID);
+        } catch (BusException ex) {
+            final LocalTransportFactory localTransportFactory = new LocalTransportFactory();
+            destinationFactoryManager.registerDestinationFactory(LocalTransportFactory.TRANSPORT_ID, localTransportFactory);
+            conduitInitiatorManager.registerConduitInitiator(LocalTransportFactory.TRANSPORT_ID, localTransportFactory);
+        }
+    }
+
+    /**
+     * Configure server factory to publish application on local transport.
+     *
+     * @param serverFactory   server factory
+     * @param applicationPath application path
+     */
+    static void configure(final JAXRSServerFactoryBean serverFactory, final String applicationPath) {
+        serverFactory.setTransportId(LocalTransportFactory.TRANSPORT_ID);
+        serverFactory.setAddress(ADDRESS_PREFIX + applicationPath);
+    }
+
+    /**
+     * Get providers of the application usable by clients: message body readers and writers that are not server-side
+     * filters, interceptors or exception mappers.
+     *
+     * @param providers providers of the application
+     * @return client providers
+     */
+    static List<Object> getClientProviders(final List<Object> providers) {
+        if (providers == null) {
+            return null;
+        }
+        return providers.stream()
+                .filter(p -> p instanceof MessageBodyReader || p instanceof MessageBodyWriter)
+                .filter(p -> !(p instanceof ContainerRequestFilter || p instanceof ContainerResponseFilter
+                        || p instanceof ReaderInterceptor || p instanceof WriterInterceptor || p instanceof ExceptionMapper))
+                .collect(Collectors.toList());
+    }
+
+    static WebClient createWebClient(final Bus bus, final String applicationPath, final List<Object> providers) {
+        return directDispatch(createClientFactory(bus, applicationPath, providers, null).createWebClient());
+    }
+
+    static <T> T createProxy(final Bus bus, final String applicationPath, final List<Object> providers, final Class<T> resourceClass) {
+        return directDispatch(createClientFactory(bus, applicationPath, providers, resourceClass).create(resourceClass));
+    }
+
+    private static JAXRSClientFactoryBean createClientFactory(final Bus bus, final String applicationPath, final List<Object> providers, final Class<?> resourceClass) {
+        final JAXRSClientFactoryBean clientFactory = new JAXRSClientFactoryBean();
+        clientFactory.setBus(bus);
+        clientFactory.setAddress(ADDRESS_PREFIX + applicationPath);
+        clientFactory.setTransportId(LocalTransportFactory.TRANSPORT_ID);
+        if (resourceClass != null) {
+            clientFactory.setResourceClass(resourceClass);
+        }
+        if (providers != null) {
+            clientFactory.setProviders(getClientProviders(providers));
+        }
+        return clientFactory;
+    }
+
+    private static <T> T directDispatch(final T client) {
+        // requests are processed by the calling thread
+        WebClient.getConfig(client).getRequestContext().put(LocalConduit.DIRECT_DISPATCH, Boolean.TRUE);
+        return client;
+    }
+}
@@ -0,0 +1,154 @@
+package hu.blackbelt.jaxrs;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.cxf.Bus;
+import org.apache.cxf.transport.http.HttpDestinationFactory;
+import org.apache.cxf.transport.http.netty.server.NettyHttpDestinationFactory;
+import org.apache.cxf.transport.http.netty.server.NettyHttpServerEngine;
+import org.apache.cxf.transport.http.netty.server.NettyHttpServerEngineFactory;
+import org.apache.cxf.transport.http.netty.server.ThreadingParameters;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+
+/**
+ * Embedded Netty HTTP transport of a CXF bus.
+ *
+ * <p>HTTP destinations of the bus are created by Netty destination factory so applications of the bus must be
+ * published on absolute addresses (see {@link #getBaseAddress()}). Netty classes are referenced by this class only, CXF
+ * Netty server transport is an optional dependency.</p>
+ */
+@Slf4j
+class NettyTransport {
+
+    private static final String PROTOCOL = "http";
+    // Netty engine is bound to all interfaces if host is not set
+    private static final String DEFAULT_HOST = "localhost";
+
+    private final Bus bus;
+    private final Settings settings;
+    private HttpDestinationFactory previousDestinationFactory;
+    private HttpDestinationFactory destinationFactory;
+
+    NettyTransport(final Bus bus, final Settings settings) {
+        this.bus = bus;
+        this.settings = settings;
+    }
+
+    /**
+     * Start Netty HTTP server engine and set Netty destination factory on the bus.
+     *
+     * @param replacedTransport transport replaced by this one (kept running until its endpoints are restarted),
+     *                          <code>null</code> if there is no running Netty transport
+     * @throws IllegalStateException if Netty HTTP server cannot be created
+     */
+    void start(final NettyTransport replacedTransport) {
+        final NettyHttpServerEngineFactory engineFactory = new NettyHttpServerEngineFactory(bus);
+        final NettyHttpServerEngine engine;
+        try {
+            engine = hasHost(settings)
+                    ? engineFactory.createNettyHttpServerEngine(settings.getHost(), settings.getPort(), PROTOCOL)
+                    : engineFactory.createNettyHttpServerEngine(settings.getPort(), PROTOCOL);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to create Netty HTTP server on port " + settings.getPort(), ex);
+        }
+
+        // settings must be applied before the first endpoint starts the engine
+        final ThreadingParameters threadingParameters = new ThreadingParameters();
+        threadingParameters.setThreadPoolSize(settings.getThreads());
+        engine.setThreadingParameters(threadingParameters);
+        engine.setReadIdleTime(settings.getIdleTimeout());
+        engine.setWriteIdleTime(settings.getIdleTimeout());
+        engine.setMaxChunkContentSize(settings.getMaxChunkContentSize());
+
+        bus.setExtension(engineFactory, NettyHttpServerEngineFactory.class);
+        previousDestinationFactory = replacedTransport != null ? replacedTransport.previousDestinationFactory : bus.getExtension(HttpDestinationFactory.class);
+        destinationFactory = new NettyHttpDestinationFactory();
+        bus.setExtension(destinationFactory, HttpDestinationFactory.class);
+        log.info("Netty HTTP transport of CXF bus {} started: {}", bus.getId(), settings);
+    }
+
+    /**
+     * Stop Netty HTTP server engine and restore previous destination factory of the bus (if it has not been replaced
+     * by another transport).
+     */
+    void stop() {
+        NettyHttpServerEngineFactory.destroyForPort(settings.getPort());
+        restoreDestinationFactory();
+        log.info("Netty HTTP transport of CXF bus {} stopped", bus.getId());
+    }
+
+    /**
+     * Restore destination factory of the bus used before this transport, new endpoints are created by it.
+     */
+    void restoreDestinationFactory() {
+        if (previousDestinationFactory != null && bus.getExtension(HttpDestinationFactory.class) == destinationFactory) {
+            bus.setExtension(previousDestinationFactory, HttpDestinationFactory.class);
+        }
+    }
+
+    /**
+     * Check if address of Netty HTTP server can be bound.
+     *
+     * @param settings transport settings
+     * @return <code>true</code> if the port is available
+     */
+    static boolean isAvailable(final Settings settings) {
+        try (ServerSocket socket = new ServerSocket()) {
+            socket.setReuseAddress(true);
+            socket.bind(hasHost(settings) ? new InetSocketAddress(settings.getHost(), settings.getPort()) : new InetSocketAddress(settings.getPort()));
+            return true;
+        } catch (IOException | IllegalArgumentException ex) {
+            log.debug("Address of Netty HTTP transport is not available: " + settings, ex);
+            return false;
+        }
+    }
+
+    /**
+     * Get base address of applications.
+     *
+     * @return absolute address of Netty HTTP server
+     */
+    String getBaseAddress() {
+        return PROTOCOL + "://" + (hasHost(settings) ? settings.getHost() : DEFAULT_HOST) + ":" + settings.getPort();
+    }
+
+    private static boolean hasHost(final Settings settings) {
+        return settings.getHost() != null && !settings.getHost().trim().isEmpty();
+    }
+
+    Settings getSettings() {
+        return settings;
+    }
+
+    @Value
+    static class Settings {
+        String host;
+        int port;
+        int threads;
+        int idleTimeout;
+        int maxChunkContentSize;
+    }
+}
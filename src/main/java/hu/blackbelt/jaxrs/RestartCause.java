@@ -0,0 +1,194 @@
+package hu.blackbelt.jaxrs;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.Value;
+import org.osgi.framework.ServiceReference;
+
+import java.util.*;
+
+/**
+ * Cause of start, stop or restart of JAX-RS applications recorded in {@link RestartJournal}.
+ *
+ * <p>Components triggering restart indirectly (by updating configuration of applications or CXF contexts) should set
+ * {@link #TRIGGER_KEY}, {@link #SERVICE_ID_KEY} and {@link #DESCRIPTION_KEY} properties so the original cause is
+ * recorded instead of the configuration change.</p>
+ */
+@Value
+public class RestartCause {
+
+    public static final String TRIGGER_KEY = "__lastChange.trigger";
+    public static final String SERVICE_ID_KEY = "__lastChange.serviceId";
+    public static final String DESCRIPTION_KEY = "__lastChange.description";
+
+    public enum Trigger {
+        /**
+         * JAX-RS application service is registered, modified or unregistered.
+         */
+        APPLICATION,
+        /**
+         * Resource (OSGi component) of an application is added or removed.
+         */
+        RESOURCE,
+        /**
+         * JAX-RS provider component of an application is added.
+         */
+        PROVIDER,
+        /**
+         * Shared JAX-RS provider is added, modified or removed.
+         */
+        SHARED_PROVIDER,
+        /**
+         * Global JAX-RS provider is added, modified or removed.
+         */
+        GLOBAL_PROVIDER,
+        /**
+         * Interceptors or configuration of CXF context are changed.
+         */
+        CXF_CONTEXT,
+        /**
+         * Configuration of server manager is changed (i.e. applications are moved to other CXF bus).
+         */
+        SERVER_MANAGER,
+        /**
+         * Application manager is stopped.
+         */
+        SHUTDOWN
+    }
+
+    public static final RestartCause UNKNOWN = new RestartCause(null, null, "unknown", Collections.emptyMap());
+
+    Trigger trigger;
+
+    /**
+     * ID of the OSGi service triggering the operation, <code>null</code> if it is unknown.
+     */
+    Long serviceId;
+
+    String description;
+
+    /**
+     * Changed service properties, values are formatted as <code>old -&gt; new</code>.
+     */
+    Map<String, String> changes;
+
+    public static RestartCause of(final Trigger trigger, final Long serviceId, final String description) {
+        return new RestartCause(trigger, serviceId, description, Collections.emptyMap());
+    }
+
+    public static RestartCause of(final Trigger trigger, final Long serviceId, final String description, final Map<String, String> changes) {
+        return new RestartCause(trigger, serviceId, description, Collections.unmodifiableMap(new TreeMap<>(changes)));
+    }
+
+    /**
+     * Get cause set by {@link #TRIGGER_KEY}, {@link #SERVICE_ID_KEY} and {@link #DESCRIPTION_KEY} properties.
+     *
+     * @param properties properties
+     * @param changes    changed properties
+     * @return cause or <code>null</code> if trigger is not set
+     */
+    public static RestartCause fromProperties(final Map<String, ?> properties, final Map<String, String> changes) {
+        final Object trigger = properties != null ? properties.get(TRIGGER_KEY) : null;
+        if (trigger == null) {
+            return null;
+        }
+        final Object serviceId = properties.get(SERVICE_ID_KEY);
+        final Object description = properties.get(DESCRIPTION_KEY);
+        try {
+            return of(Trigger.valueOf(String.valueOf(trigger)), serviceId != null ? Long.valueOf(String.valueOf(serviceId)) : null,
+                    description != null ? String.valueOf(description) : null, changes);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Set cause properties.
+     *
+     * @param properties  properties (of a configuration)
+     * @param trigger     trigger
+     * @param serviceId   ID of the triggering service
+     * @param description description
+     */
+    public static void setProperties(final Dictionary<String, Object> properties, final Trigger trigger, final Long serviceId, final String description) {
+        properties.put(TRIGGER_KEY, trigger.name());
+        if (serviceId != null) {
+            properties.put(SERVICE_ID_KEY, serviceId);
+        } else {
+            properties.remove(SERVICE_ID_KEY);
+        }
+        properties.put(DESCRIPTION_KEY, description);
+    }
+
+    /**
+     * Compare service properties.
+     *
+     * @param before properties before change
+     * @param after  properties after change
+     * @return changed properties, values are formatted as <code>old -&gt; new</code>
+     */
+    public static Map<String, String> diff(final Map<String, ?> before, final Map<String, ?> after) {
+        final Map<String, String> changes = new TreeMap<>();
+        final Set<String> keys = new TreeSet<>();
+        if (before != null) {
+            keys.addAll(before.keySet());
+        }
+        if (after != null) {
+            keys.addAll(after.keySet());
+        }
+        for (final String key : keys) {
+            final Object oldValue = before != null ? before.get(key) : null;
+            final Object newValue = after != null ? after.get(key) : null;
+            if (!Objects.deepEquals(oldValue, newValue)) {
+                changes.put(key, format(oldValue) + " -> " + format(newValue));
+            }
+        }
+        return changes;
+    }
+
+    static Map<String, Object> getProperties(final ServiceReference<?> reference) {
+        final Map<String, Object> properties = new TreeMap<>();
+        for (final String key : reference.getPropertyKeys()) {
+            properties.put(key, reference.getProperty(key));
+        }
+        return properties;
+    }
+
+    private static String format(final Object value) {
+        return value instanceof Object[] ? Arrays.deepToString((Object[]) value) : String.valueOf(value);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(trigger != null ? trigger.name() : "UNKNOWN");
+        if (serviceId != null) {
+            sb.append(" [service.id=").append(serviceId).append("]");
+        }
+        if (description != null) {
+            sb.append(": ").append(description);
+        }
+        if (!changes.isEmpty()) {
+            sb.append(" ").append(changes);
+        }
+        return sb.toString();
+    }
+}
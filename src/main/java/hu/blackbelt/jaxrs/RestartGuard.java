@@ -0,0 +1,277 @@
+package hu.blackbelt.jaxrs;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.osgi.framework.Bundle;
+
+import javax.ws.rs.core.Application;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Restart storm protection of {@link CxfServerManager}.
+ *
+ * <p>Restart requests are counted per application in a sliding window. If the number of requests exceeds the threshold
+ * the restart is deferred by exponential backoff and the running endpoint keeps serving. Requests received during
+ * backoff are coalesced, the application is restarted (with the last requested application, bundle and providers) when
+ * the rate falls below the threshold or the maximum backoff is reached.</p>
+ */
+@Slf4j
+class RestartGuard {
+
+    static final String TOPIC_PREFIX = "hu/blackbelt/jaxrs/application/";
+    static final String TOPIC_BACKOFF_STARTED = TOPIC_PREFIX + "BACKOFF_STARTED";
+    static final String TOPIC_BACKOFF_EXTENDED = TOPIC_PREFIX + "BACKOFF_EXTENDED";
+    static final String TOPIC_BACKOFF_ENDED = TOPIC_PREFIX + "BACKOFF_ENDED";
+
+    static final String APPLICATION_ID_PROPERTY = "application.id";
+    static final String RESTART_REQUESTS_PROPERTY = "restart.requests";
+    static final String BACKOFF_DELAY_PROPERTY = "backoff.delay";
+    static final String CAUSE_PROPERTY = "cause";
+
+    interface Callback {
+
+        /**
+         * Restart deferred application.
+         *
+         * @param applicationId     application ID
+         * @param application       last requested application, <code>null</code> to use the current one
+         * @param applicationBundle bundle of the last requested application
+         * @param providers         last requested providers, <code>null</code> to use the current ones
+         * @param cause             cause of the last restart request
+         */
+        void restart(Long applicationId, Application application, Bundle applicationBundle, List<Object> providers, RestartCause cause);
+
+        void postEvent(String topic, Map<String, Object> properties);
+    }
+
+    private static class State {
+        final Deque<Long> requests = new ArrayDeque<>();
+        int level;
+        ScheduledFuture<?> future;
+        boolean pending;
+        Application pendingApplication;
+        Bundle pendingApplicationBundle;
+        List<Object> pendingProviders;
+        RestartCause pendingCause;
+    }
+
+    private final Map<Long, State> states = new HashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final Callback callback;
+
+    private int threshold;
+    private long windowNanos;
+    private long initialBackoff;
+    private long maxBackoff;
+
+    RestartGuard(final Callback callback) {
+        this.callback = callback;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "jaxrs-restart-guard");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Configure restart storm protection.
+     *
+     * @param threshold      maximum number of restart requests in the window, <code>0</code> to disable protection
+     * @param window         length of the window in milliseconds
+     * @param initialBackoff initial backoff in milliseconds
+     * @param maxBackoff     maximum backoff in milliseconds
+     */
+    synchronized void configure(final int threshold, final long window, final long initialBackoff, final long maxBackoff) {
+        this.threshold = Math.max(0, threshold);
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, window));
+        this.initialBackoff = Math.max(1L, initialBackoff);
+        this.maxBackoff = Math.max(this.initialBackoff, maxBackoff);
+    }
+
+    /**
+     * Register restart request of an application.
+     *
+     * @param applicationId application ID
+     * @param providers     requested providers, <code>null</code> to use the current ones
+     * @param cause         cause of the request
+     * @return <code>true</code> if application can be restarted now, <code>false</code> if restart is deferred
+     */
+    synchronized boolean allowRestart(final Long applicationId, final List<Object> providers, final RestartCause cause) {
+        return allow(applicationId, null, null, providers, cause);
+    }
+
+    /**
+     * Register start request of a running application (application service is modified), arguments of the last start
+     * request are used by the deferred restart.
+     *
+     * @param applicationId     application ID
+     * @param application       requested application
+     * @param applicationBundle bundle of the requested application
+     * @param providers         requested providers, <code>null</code> to use the current ones
+     * @param cause             cause of the request
+     * @return <code>true</code> if application can be started now, <code>false</code> if start is deferred
+     */
+    synchronized boolean allowStart(final Long applicationId, final Application application, final Bundle applicationBundle,
+                                    final List<Object> providers, final RestartCause cause) {
+        return allow(applicationId, application, applicationBundle, providers, cause);
+    }
+
+    private boolean allow(final Long applicationId, final Application application, final Bundle applicationBundle,
+                          final List<Object> providers, final RestartCause cause) {
+        if (threshold <= 0) {
+            return true;
+        }
+        final State state = states.computeIfAbsent(applicationId, id -> new State());
+        final long now = System.nanoTime();
+        state.requests.addLast(now);
+        evict(state, now);
+
+        if (state.future == null && state.requests.size() <= threshold) {
+            return true;
+        }
+
+        state.pending = true;
+        if (application != null) {
+            state.pendingApplication = application;
+            state.pendingApplicationBundle = applicationBundle;
+        }
+        if (providers != null) {
+            state.pendingProviders = providers;
+        }
+        state.pendingCause = cause;
+        if (state.future == null) {
+            state.level = 0;
+            schedule(applicationId, state);
+            log.warn("Restart storm of JAX-RS application detected ({} restart requests), restart is deferred by {} ms, service.id = {}",
+                    state.requests.size(), getDelay(state), applicationId);
+            postEvent(TOPIC_BACKOFF_STARTED, applicationId, state, cause);
+        }
+        return false;
+    }
+
+    /**
+     * Forget application (application is removed), deferred restart is cancelled.
+     *
+     * @param applicationId application ID
+     */
+    synchronized void remove(final Long applicationId) {
+        final State state = states.remove(applicationId);
+        if (state != null && state.future != null) {
+            state.future.cancel(false);
+        }
+    }
+
+    void close() {
+        scheduler.shutdownNow();
+        synchronized (this) {
+            states.clear();
+        }
+    }
+
+    private void check(final Long applicationId) {
+        final boolean restart;
+        final Application application;
+        final Bundle applicationBundle;
+        final List<Object> providers;
+        final RestartCause cause;
+        synchronized (this) {
+            final State state = states.get(applicationId);
+            if (state == null || state.future == null) {
+                return;
+            }
+            evict(state, System.nanoTime());
+            final boolean settled = state.requests.size() <= threshold;
+            final boolean maxBackoffReached = getDelay(state) >= maxBackoff;
+            if (!settled && !maxBackoffReached) {
+                state.level++;
+                schedule(applicationId, state);
+                log.info("Restart storm of JAX-RS application continues, restart is deferred by {} ms, service.id = {}", getDelay(state), applicationId);
+                postEvent(TOPIC_BACKOFF_EXTENDED, applicationId, state, state.pendingCause);
+                return;
+            }
+
+            restart = state.pending;
+            application = state.pendingApplication;
+            applicationBundle = state.pendingApplicationBundle;
+            providers = state.pendingProviders;
+            cause = state.pendingCause;
+            state.pending = false;
+            state.pendingApplication = null;
+            state.pendingApplicationBundle = null;
+            state.pendingProviders = null;
+            state.pendingCause = null;
+
+            if (settled) {
+                state.future = null;
+                state.level = 0;
+                log.info("Restart storm of JAX-RS application is over, service.id = {}", applicationId);
+                postEvent(TOPIC_BACKOFF_ENDED, applicationId, state, cause);
+            } else {
+                // apply the last requested state at most once per maximum backoff
+                schedule(applicationId, state);
+                postEvent(TOPIC_BACKOFF_EXTENDED, applicationId, state, cause);
+            }
+        }
+        if (restart) {
+            try {
+                callback.restart(applicationId, application, applicationBundle, providers, cause);
+            } catch (RuntimeException ex) {
+                log.error("Unable to restart JAX-RS application, service.id = " + applicationId, ex);
+            }
+        }
+    }
+
+    private void schedule(final Long applicationId, final State state) {
+        try {
+            state.future = scheduler.schedule(() -> check(applicationId), getDelay(state), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            // guard is closed
+            state.future = null;
+        }
+    }
+
+    private long getDelay(final State state) {
+        long delay = initialBackoff;
+        for (int i = 0; i < state.level && delay < maxBackoff; i++) {
+            delay = delay > Long.MAX_VALUE / 2 ? Long.MAX_VALUE : delay * 2;
+        }
+        return Math.min(delay, maxBackoff);
+    }
+
+    private void evict(final State state, final long now) {
+        while (!state.requests.isEmpty() && now - state.requests.peekFirst() > windowNanos) {
+            state.requests.removeFirst();
+        }
+    }
+
+    private void postEvent(final String topic, final Long applicationId, final State state, final RestartCause cause) {
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put(APPLICATION_ID_PROPERTY, applicationId);
+        properties.put(RESTART_REQUESTS_PROPERTY, state.requests.size());
+        properties.put(BACKOFF_DELAY_PROPERTY, getDelay(state));
+        if (cause != null) {
+            properties.put(CAUSE_PROPERTY, cause.toString());
+        }
+        callback.postEvent(topic, properties);
+    }
+}
@@ -0,0 +1,72 @@
+package hu.blackbelt.jaxrs;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded in-memory journal of starts, stops and restarts of JAX-RS applications, registered as OSGi service by
+ * {@link CxfServerManager} and published as platform MBean (see {@link RestartJournalMBean}).
+ */
+public interface RestartJournal {
+
+    enum Operation {
+        START, STOP, RESTART
+    }
+
+    @Value
+    class Entry {
+
+        /**
+         * Time of the operation (epoch milliseconds).
+         */
+        long timestamp;
+
+        Operation operation;
+
+        RestartCause cause;
+
+        /**
+         * Affected applications: application path by service ID.
+         */
+        Map<Long, String> applications;
+
+        /**
+         * Duration of the operation in milliseconds (including draining of in-flight requests).
+         */
+        long duration;
+    }
+
+    /**
+     * Get journal entries.
+     *
+     * @return entries, the oldest one is the first
+     */
+    List<Entry> getEntries();
+
+    /**
+     * Remove all entries.
+     */
+    void clear();
+}
@@ -0,0 +1,40 @@
+package hu.blackbelt.jaxrs;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Management interface of {@link RestartJournal}, registered as <code>hu.blackbelt.jaxrs:type=RestartJournal</code>.
+ */
+public interface RestartJournalMBean {
+
+    int getCapacity();
+
+    int getSize();
+
+    /**
+     * Get journal entries formatted as text.
+     *
+     * @return entries, the oldest one is the first
+     */
+    String[] getEntries();
+
+    void clear();
+}
@@ -25,18 +25,48 @@ import org.osgi.framework.Bundle;
 import javax.ws.rs.core.Application;
 import java.util.*;
 
+/**
+ * Server manager publishing JAX-RS applications.
+ *
+ * <p>Lifecycle operations are run in order of the calls. Start, update and restart operations are asynchronous (they
+ * may be still pending or deferred when the method returns) so OSGi callbacks are not blocked by draining applications.
+ * Stop and shutdown operations are synchronous: application is stopped (drained) when the method returns so its bundle
+ * can be stopped.</p>
+ */
 interface ServerManager {
     String ALIAS_KEY = "alias";
 
-    void startApplication(Long applicationId, Application application, Bundle applicationBundle, List<Object> providers);
+    /**
+     * Start (or restart a running) application asynchronously.
+     */
+    void startApplication(Long applicationId, Application application, Bundle applicationBundle, List<Object> providers, RestartCause cause);
+
+    /**
+     * Stop application, new requests are rejected and the caller is waiting for running ones (up to drain timeout).
+     *
+     * @return stopped application
+     */
+    Application stopApplication(Long applicationId, RestartCause cause);
 
-    Application stopApplication(Long applicationId);
+    void removeApplication(Long applicationId);
 
-    void updateApplicationResources(Long applicationId, Application application, List<Object> providers);
+    /**
+     * Restart application with updated resources asynchronously.
+     */
+    void updateApplicationResources(Long applicationId, Application application, List<Object> providers, RestartCause cause);
 
-    void restartApplications(Collection<Long> applicationIds, Map<Long, List<Object>> providers);
+    /**
+     * Restart applications asynchronously.
+     */
+    void restartApplications(Collection<Long> applicationIds, Map<Long, List<Object>> providers, RestartCause cause);
 
-    void restartAllApplications(Map<Long, List<Object>> providers);
+    /**
+     * Restart all applications asynchronously.
+     */
+    void restartAllApplications(Map<Long, List<Object>> providers, RestartCause cause);
 
+    /**
+     * Stop all applications, caller is waiting for them.
+     */
     void shutdown();
 }
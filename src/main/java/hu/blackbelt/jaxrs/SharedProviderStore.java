@@ -40,6 +40,7 @@ public class SharedProviderStore {
     private final Map<Long, Object> sharedProviders = new ConcurrentHashMap<>();
     private final Map<Long, String> sharedProviderFilters = new ConcurrentHashMap<>();
     private final Map<Long, Object> globalProviders = new ConcurrentHashMap<>();
+    private final Map<Long, Map<String, Object>> providerProperties = new ConcurrentHashMap<>();
 
     private static final String JAXRS_PROVIDER_BUNDLE_KEY = "X-JAXRS-Provider";
 
@@ -106,14 +107,15 @@ public class SharedProviderStore {
             if (provider != null && !Objects.equals(reference.getProperty(ApplicationManager.GENERATED_BY_KEY), ApplicationManager.GENERATED_BY_VALUE) && provider.getClass().isAnnotationPresent(Provider.class)) {
                 final Long providerId = (Long) reference.getProperty(Constants.SERVICE_ID);
                 final String filter = (String) reference.getProperty(APPLICATIONS_FILTER);
+                providerProperties.put(providerId, RestartCause.getProperties(reference));
                 if (filter != null) {
                     sharedProviders.put(providerId, provider);
                     sharedProviderFilters.put(providerId, filter);
                     final Collection<Long> changedApplicationIds = addedSharedProvider(providerId, filter);
-                    callback.restartApplications(changedApplicationIds);
+                    callback.restartApplications(changedApplicationIds, RestartCause.of(RestartCause.Trigger.SHARED_PROVIDER, providerId, "added " + provider.getClass().getName()));
                 } else {
                     addedGlobalProvider(providerId, provider);
-                    callback.restartApplications(null);
+                    callback.restartApplications(null, RestartCause.of(RestartCause.Trigger.GLOBAL_PROVIDER, providerId, "added " + provider.getClass().getName()));
                 }
             }
             return provider;
@@ -125,24 +127,26 @@ public class SharedProviderStore {
             if (provider != null && !Objects.equals(reference.getProperty(ApplicationManager.GENERATED_BY_KEY), ApplicationManager.GENERATED_BY_VALUE) && provider.getClass().isAnnotationPresent(Provider.class)) {
                 final Long providerId = (Long) reference.getProperty(Constants.SERVICE_ID);
                 final String filter = (String) reference.getProperty(APPLICATIONS_FILTER);
+                final Map<String, Object> properties = RestartCause.getProperties(reference);
+                final Map<String, String> changes = RestartCause.diff(providerProperties.put(providerId, properties), properties);
                 if (filter == null && !globalProviders.containsKey(providerId)) {
                     // change provider to global
                     sharedProviderFilters.remove(providerId);
                     removedSharedProvider(providerId);
                     addedGlobalProvider(providerId, provider);
-                    callback.restartApplications(null);
+                    callback.restartApplications(null, RestartCause.of(RestartCause.Trigger.GLOBAL_PROVIDER, providerId, "changed to global " + provider.getClass().getName(), changes));
                 } else if (filter != null && globalProviders.containsKey(providerId)) {
                     // change provider to shared
                     sharedProviderFilters.put(providerId, filter);
                     removeGlobalProvider(providerId);
                     addedSharedProvider(providerId, filter);
-                    callback.restartApplications(null);
+                    callback.restartApplications(null, RestartCause.of(RestartCause.Trigger.SHARED_PROVIDER, providerId, "changed to shared " + provider.getClass().getName(), changes));
                 } else if (filter != null) {
                     // check shared provider filter
                     sharedProviders.put(providerId, provider);
                     sharedProviderFilters.put(providerId, filter);
                     final Collection<Long> changedApplicationIds = changedSharedProvider(providerId, filter);
-                    callback.restartApplications(changedApplicationIds);
+                    callback.restartApplications(changedApplicationIds, RestartCause.of(RestartCause.Trigger.SHARED_PROVIDER, providerId, "modified " + provider.getClass().getName(), changes));
                 }
             }
         }
@@ -152,16 +156,17 @@ public class SharedProviderStore {
             super.removedService(reference, provider);
             if (provider != null && !Objects.equals(reference.getProperty(ApplicationManager.GENERATED_BY_KEY), ApplicationManager.GENERATED_BY_VALUE) && provider.getClass().isAnnotationPresent(Provider.class)) {
                 final Long providerId = (Long) reference.getProperty(Constants.SERVICE_ID);
+                providerProperties.remove(providerId);
 
                 final String filter = (String) reference.getProperty(APPLICATIONS_FILTER);
                 if (filter != null) {
                     sharedProviders.remove(providerId);
                     sharedProviderFilters.remove(providerId);
                     final Collection<Long> changedApplicationIds = removedSharedProvider(providerId);
-                    callback.restartApplications(changedApplicationIds);
+                    callback.restartApplications(changedApplicationIds, RestartCause.of(RestartCause.Trigger.SHARED_PROVIDER, providerId, "removed " + provider.getClass().getName()));
                 } else {
                     removeGlobalProvider(providerId);
-                    callback.restartApplications(null);
+                    callback.restartApplications(null, RestartCause.of(RestartCause.Trigger.GLOBAL_PROVIDER, providerId, "removed " + provider.getClass().getName()));
                 }
             }
         }
@@ -236,6 +241,6 @@ public class SharedProviderStore {
     }
 
     interface Callback {
-        void restartApplications(Collection<Long> applicationIds);
+        void restartApplications(Collection<Long> applicationIds, RestartCause cause);
     }
 }
@@ -0,0 +1,217 @@
+package hu.blackbelt.jaxrs;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import hu.blackbelt.jaxrs.interceptors.AbstractCompletionInterceptor;
+import org.apache.cxf.helpers.CastUtils;
+import org.apache.cxf.interceptor.Fault;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.Phase;
+
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IN interceptor limiting request bodies (uploads) of a CXF bus, added to the bus by {@link CxfContext}.
+ *
+ * <p>Bytes of request bodies are counted while they are read by the application. A request is rejected with
+ * <code>413 Request Entity Too Large</code> if its body is larger than the per-request limit. Bytes of running
+ * requests are reserved from a budget shared by all endpoints of the bus, requests are rejected with
+ * <code>503 Service Unavailable</code> if the budget is exhausted. Content length is reserved on start if it is known,
+ * chunked bodies are reserved block by block.</p>
+ */
+class UploadLimitInterceptor extends AbstractCompletionInterceptor<UploadLimitInterceptor.Usage> {
+
+    private static final long RESERVATION_BLOCK_SIZE = 64 * 1024L;
+    private static final long RETRY_AFTER_SECONDS = 1L;
+    private static final String CONTENT_LENGTH_HEADER = "Content-Length";
+
+    private final AtomicLong inFlight = new AtomicLong();
+
+    private volatile long maxRequestSize;
+    private volatile long maxInFlightSize;
+
+    UploadLimitInterceptor() {
+        super(Phase.RECEIVE);
+    }
+
+    /**
+     * Update limits, running requests are checked by the limits of their start.
+     *
+     * @param maxRequestSize  maximum size of a request body (in bytes), 0 means unlimited
+     * @param maxInFlightSize maximum size of request bodies being read at the same time (in bytes), 0 means unlimited
+     */
+    void configure(final long maxRequestSize, final long maxInFlightSize) {
+        this.maxRequestSize = maxRequestSize;
+        this.maxInFlightSize = maxInFlightSize;
+    }
+
+    /**
+     * Get number of bytes reserved by running requests.
+     *
+     * @return reserved bytes
+     */
+    long getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    protected Usage onStart(final Message message) throws Fault {
+        final InputStream inputStream = message.getContent(InputStream.class);
+        final long contentLength = getContentLength(message);
+        if (inputStream == null || contentLength == 0) {
+            return null;
+        }
+
+        final Usage usage = new Usage(maxRequestSize, maxInFlightSize);
+        if (usage.maxRequestSize > 0 && contentLength > usage.maxRequestSize) {
+            throw createFault(new WebApplicationException("Request entity is too large", Response.Status.REQUEST_ENTITY_TOO_LARGE));
+        }
+        if (contentLength > 0 && !usage.reserve(contentLength)) {
+            throw createFault(new ServiceUnavailableException("Too many uploads in progress", RETRY_AFTER_SECONDS));
+        }
+        message.setContent(InputStream.class, new LimitedInputStream(inputStream, usage));
+        return usage;
+    }
+
+    @Override
+    protected void onComplete(final Exchange exchange, final Usage usage, final boolean fault) {
+        usage.release();
+    }
+
+    private static Fault createFault(final WebApplicationException ex) {
+        final Fault fault = new Fault(ex);
+        fault.setStatusCode(ex.getResponse().getStatus());
+        return fault;
+    }
+
+    private static long getContentLength(final Message message) {
+        final Map<String, List<String>> headers = CastUtils.cast((Map<?, ?>) message.get(Message.PROTOCOL_HEADERS));
+        if (headers != null) {
+            for (final Map.Entry<String, List<String>> header : headers.entrySet()) {
+                if (CONTENT_LENGTH_HEADER.equalsIgnoreCase(header.getKey()) && header.getValue() != null && !header.getValue().isEmpty()) {
+                    try {
+                        return Long.parseLong(header.getValue().get(0).trim());
+                    } catch (NumberFormatException ex) {
+                        return -1L;
+                    }
+                }
+            }
+        }
+        return -1L;
+    }
+
+    /**
+     * Bytes read and reserved by a request.
+     */
+    class Usage {
+        private final long maxRequestSize;
+        private final long maxInFlightSize;
+        private long read;
+        private long reserved;
+
+        Usage(final long maxRequestSize, final long maxInFlightSize) {
+            this.maxRequestSize = maxRequestSize;
+            this.maxInFlightSize = maxInFlightSize;
+        }
+
+        synchronized void count(final long bytes) {
+            read += bytes;
+            if (maxRequestSize > 0 && read > maxRequestSize) {
+                throw new WebApplicationException("Request entity is too large", Response.Status.REQUEST_ENTITY_TOO_LARGE);
+            }
+            if (read > reserved && !reserve(Math.max(read - reserved, RESERVATION_BLOCK_SIZE))) {
+                throw new ServiceUnavailableException("Too many uploads in progress", RETRY_AFTER_SECONDS);
+            }
+        }
+
+        synchronized boolean reserve(final long bytes) {
+            if (maxInFlightSize <= 0) {
+                reserved += bytes;
+                inFlight.addAndGet(bytes);
+                return true;
+            }
+            long current;
+            do {
+                current = inFlight.get();
+                if (current + bytes > maxInFlightSize) {
+                    return false;
+                }
+            } while (!inFlight.compareAndSet(current, current + bytes));
+            reserved += bytes;
+            return true;
+        }
+
+        synchronized void release() {
+            inFlight.addAndGet(-reserved);
+            reserved = 0L;
+        }
+    }
+
+    private static class LimitedInputStream extends FilterInputStream {
+        private final Usage usage;
+
+        LimitedInputStream(final InputStream in, final Usage usage) {
+            super(in);
+            this.usage = usage;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                usage.count(1L);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int n = super.read(b, off, len);
+            if (n > 0) {
+                usage.count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = super.skip(n);
+            if (skipped > 0) {
+                usage.count(skipped);
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
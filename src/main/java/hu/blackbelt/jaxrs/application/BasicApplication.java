@@ -21,6 +21,8 @@ package hu.blackbelt.jaxrs.application;
  */
 
 import hu.blackbelt.jaxrs.CxfContext;
+import hu.blackbelt.jaxrs.RestartCause;
+import hu.blackbelt.jaxrs.providers.FileContentProvider;
 import lombok.extern.slf4j.Slf4j;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
@@ -43,6 +45,10 @@ public class BasicApplication extends Application {
 
     private static final String CLASSES_KEY = "jaxrs.resource.classes";
     private static final String COMPONENTS_KEY = "jaxrs.resource.components";
+    private static final String STATIC_DIRECTORY_KEY = "jaxrs.static.directory";
+    private static final String STATIC_PREFIX_KEY = "jaxrs.static.prefix";
+
+    private static final String STATIC_PREFIX_DEFAULT = "static";
 
     public static final String CONTEXT_PROPERTY_KEY = "cxf.context";
 
@@ -68,6 +74,9 @@ public class BasicApplication extends Application {
 
     private Object lastChangedResources;
 
+    private String staticContentDef;
+    private final List<Object> staticContent = new ArrayList<>();
+
     @Activate
     void start(final BundleContext context, final Map<String, Object> config) {
         pid = (String) config.get(Constants.SERVICE_PID);
@@ -87,6 +96,8 @@ public class BasicApplication extends Application {
             startResourceTracker(context, filter);
         }
 
+        setStaticContent((String) config.get(STATIC_DIRECTORY_KEY), (String) config.get(STATIC_PREFIX_KEY));
+
         properties.put(CONTEXT_PROPERTY_KEY, this.cxfContext);
     }
 
@@ -117,6 +128,13 @@ public class BasicApplication extends Application {
             changedResources = true;
         }
 
+        final String staticDirectory = (String) config.get(STATIC_DIRECTORY_KEY);
+        final String staticPrefix = (String) config.get(STATIC_PREFIX_KEY);
+        if (!Objects.equals(staticContentDef, getStaticContentDef(staticDirectory, staticPrefix))) {
+            setStaticContent(staticDirectory, staticPrefix);
+            changedResources(RestartCause.Trigger.RESOURCE, null, "static content changed: " + staticContentDef);
+        }
+
         final Object lastChanged = config.get(CHANGED_RESOURCES_KEY);
         if (!Objects.equals(lastChanged, lastChangedResources)) {
             lastChangedResources = lastChanged;
@@ -141,6 +159,8 @@ public class BasicApplication extends Application {
         components.clear();
         classesDef = null;
         componentFilter = null;
+        staticContentDef = null;
+        staticContent.clear();
         properties.clear();
     }
 
@@ -155,7 +175,13 @@ public class BasicApplication extends Application {
         final Object newLastChangedContext = props.get(CxfContext.LAST_CHANGED_CONFIGURATION);
         if (!Objects.equals(lastChangedContext, newLastChangedContext)) {
             lastChangedContext = newLastChangedContext;
-            changedResources();
+            final RestartCause contextCause = RestartCause.fromProperties(props, Collections.emptyMap());
+            if (contextCause != null && contextCause.getServiceId() != null) {
+                changedResources(RestartCause.Trigger.CXF_CONTEXT, contextCause.getServiceId(), "CXF context " + cxfContext.getBusId() + ": " + contextCause.getDescription());
+            } else {
+                changedResources(RestartCause.Trigger.CXF_CONTEXT, (Long) props.get(Constants.SERVICE_ID), "CXF context " + cxfContext.getBusId()
+                        + (contextCause != null ? ": " + contextCause.getDescription() : " changed"));
+            }
         }
     }
 
@@ -173,6 +199,27 @@ public class BasicApplication extends Application {
         }
     }
 
+    /**
+     * Add static content resource (and writer of file content) to the application if directory is set.
+     *
+     * @param directory directory of static files
+     * @param prefix    path of static files relative to the application path
+     */
+    private void setStaticContent(final String directory, final String prefix) {
+        components.removeAll(staticContent);
+        staticContent.clear();
+        staticContentDef = getStaticContentDef(directory, prefix);
+        if (directory != null && !directory.trim().isEmpty()) {
+            staticContent.add(new StaticContentResource(directory.trim(), prefix != null ? prefix : STATIC_PREFIX_DEFAULT));
+            staticContent.add(new FileContentProvider());
+            components.addAll(staticContent);
+        }
+    }
+
+    private static String getStaticContentDef(final String directory, final String prefix) {
+        return directory != null && !directory.trim().isEmpty() ? directory.trim() + "@" + (prefix != null ? prefix : STATIC_PREFIX_DEFAULT) : null;
+    }
+
     private void setClasses(final String classesDef) {
         classes.clear();
         for (final String className : classesDef.split("\\s,\\s")) {
@@ -210,7 +257,7 @@ public class BasicApplication extends Application {
             final Object resource = super.addingService(reference);
             if (resource != null) {
                 components.add(resource);
-                changedResources();
+                changedResources(RestartCause.Trigger.RESOURCE, (Long) reference.getProperty(Constants.SERVICE_ID), "added " + resource.getClass().getName());
 
             }
             return resource;
@@ -221,12 +268,12 @@ public class BasicApplication extends Application {
             super.removedService(reference, resource);
             if (resource != null) {
                 components.remove(resource);
-                changedResources();
+                changedResources(RestartCause.Trigger.RESOURCE, (Long) reference.getProperty(Constants.SERVICE_ID), "removed " + resource.getClass().getName());
             }
         }
     }
 
-    private void changedResources() {
+    private void changedResources(final RestartCause.Trigger trigger, final Long serviceId, final String description) {
         try {
             log.debug("Changed OSGi component resources in JAX-RS application: {}", pid);
             final Configuration[] cfgs = configAdmin.listConfigurations("(" + Constants.SERVICE_PID + "=" + pid + ")");
@@ -236,6 +283,7 @@ public class BasicApplication extends Application {
                     if (cfg != null) {
                         final Dictionary<String, Object> props = cfg.getProperties();
                         props.put(CHANGED_RESOURCES_KEY, lastChangedResources);
+                        RestartCause.setProperties(props, trigger, serviceId, description);
                         try {
                             cfg.update(props);
                         } catch (IllegalStateException ex) {
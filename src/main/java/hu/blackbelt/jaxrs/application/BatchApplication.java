@@ -0,0 +1,405 @@
+package hu.blackbelt.jaxrs.application;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import hu.blackbelt.jaxrs.CxfContext;
+import hu.blackbelt.jaxrs.LocalClientFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.cxf.jaxrs.client.WebClient;
+import org.osgi.framework.Constants;
+import org.osgi.service.component.annotations.*;
+
+import javax.ws.rs.*;
+import javax.ws.rs.core.Application;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * JAX-RS application dispatching batches of sub-requests to applications of the same JVM.
+ *
+ * <p>Application path must be set by <code>applicationPath</code> configuration property, batches are accepted at
+ * <code>{applicationPath}/batch</code>. Envelope is a JSON array of sub-requests:</p>
+ * <pre>
+ * [
+ *   {"id": "1", "method": "GET", "path": "/api/users/1", "headers": {"Accept": "application/json"}},
+ *   {"id": "2", "method": "POST", "path": "/api/users", "body": {"name": "John"}}
+ * ]
+ * </pre>
+ *
+ * <p>Sub-requests are sent over CXF local transport (see {@link LocalClientFactory}) in parallel on a bounded
+ * executor, response is a JSON array containing <code>id</code>, <code>status</code>, <code>headers</code> and
+ * <code>body</code> of each sub-request in the order of the envelope. Failure of a sub-request does not fail the
+ * batch. Bodies of non-textual media types are Base64 encoded (<code>"bodyEncoding": "base64"</code>) in both
+ * directions.</p>
+ *
+ * <p>Sub-requests bypass servlet (or HTTP whiteboard) security in front of target applications, so credentials of the
+ * batch request (<code>Authorization</code> and <code>Cookie</code> headers by default) are forwarded to each
+ * sub-request replacing credentials of the envelope, and target applications must be listed by <code>targets</code>
+ * configuration property (all sub-requests are rejected if it is not set).</p>
+ *
+ * <p>Request threads are waiting for sub-requests of their batches, so the number of batches processed at the same
+ * time is limited by <code>batches.max</code> configuration property, further batches are rejected with
+ * <code>503 Service Unavailable</code> without waiting.</p>
+ */
+@Component(immediate = true, service = Application.class, configurationPolicy = ConfigurationPolicy.REQUIRE)
+@Slf4j
+public class BatchApplication extends Application {
+
+    private static final String APPLICATION_PATH_KEY = "applicationPath";
+    private static final String THREADS_KEY = "threads";
+    private static final String QUEUE_SIZE_KEY = "queue.size";
+    private static final String MAX_REQUESTS_KEY = "requests.max";
+    private static final String MAX_BATCHES_KEY = "batches.max";
+    private static final String TIMEOUT_KEY = "timeout";
+    private static final String TARGETS_KEY = "targets";
+    private static final String CREDENTIALS_HEADERS_KEY = "credentials.headers";
+
+    private static final int THREADS_DEFAULT = Runtime.getRuntime().availableProcessors() * 2;
+    private static final int QUEUE_SIZE_DEFAULT = 256;
+    private static final int MAX_REQUESTS_DEFAULT = 100;
+    private static final int MAX_BATCHES_DEFAULT = 16;
+    private static final long TIMEOUT_DEFAULT = 30000L;
+    private static final String CREDENTIALS_HEADERS_DEFAULT = HttpHeaders.AUTHORIZATION + "," + HttpHeaders.COOKIE;
+
+    private static final String BODY_ENCODING = "bodyEncoding";
+    private static final String BASE64_ENCODING = "base64";
+
+    private static final int STATUS_TOO_MANY_REQUESTS = 429;
+    private static final long RETRY_AFTER_SECONDS = 1L;
+
+    @Reference(name = "cxf.context", cardinality = ReferenceCardinality.OPTIONAL, policyOption = ReferencePolicyOption.GREEDY)
+    private CxfContext cxfContext;
+
+    @Reference
+    private LocalClientFactory localClientFactory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, Object> properties = new TreeMap<>();
+    private final Set<Object> singletons = new LinkedHashSet<>();
+
+    private ThreadPoolExecutor executor;
+    private Semaphore batchPermits;
+    private String applicationPath;
+    private int maxRequests;
+    private long timeout;
+    private Set<String> targets;
+    private List<String> credentialsHeaders;
+
+    @Activate
+    void start(final Map<String, Object> config) {
+        log.info("Starting JAX-RS batch application: " + config.get(Constants.SERVICE_PID));
+        properties.putAll(config);
+        if (cxfContext != null) {
+            properties.put(BasicApplication.CONTEXT_PROPERTY_KEY, cxfContext);
+        }
+
+        final int threads = Math.max(1, getInt(config, THREADS_KEY, THREADS_DEFAULT));
+        final int queueSize = Math.max(1, getInt(config, QUEUE_SIZE_KEY, QUEUE_SIZE_DEFAULT));
+        applicationPath = config.get(APPLICATION_PATH_KEY) != null ? String.valueOf(config.get(APPLICATION_PATH_KEY)) : null;
+        maxRequests = getInt(config, MAX_REQUESTS_KEY, MAX_REQUESTS_DEFAULT);
+        timeout = config.get(TIMEOUT_KEY) != null ? Long.parseLong(String.valueOf(config.get(TIMEOUT_KEY))) : TIMEOUT_DEFAULT;
+        final List<String> targetList = getList(config, TARGETS_KEY, null);
+        targets = new HashSet<>(targetList);
+        credentialsHeaders = getList(config, CREDENTIALS_HEADERS_KEY, CREDENTIALS_HEADERS_DEFAULT);
+        if (targets.isEmpty()) {
+            log.warn("No targets are defined by JAX-RS batch application, all sub-requests are rejected: " + config.get(Constants.SERVICE_PID));
+        }
+        batchPermits = new Semaphore(Math.max(1, getInt(config, MAX_BATCHES_KEY, MAX_BATCHES_DEFAULT)));
+
+        final AtomicInteger threadCounter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+            final Thread thread = new Thread(runnable, "jaxrs-batch-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+
+        singletons.add(new BatchResource(this::dispatch));
+    }
+
+    @Deactivate
+    void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        properties.clear();
+        singletons.clear();
+    }
+
+    private static List<String> getList(final Map<String, Object> config, final String key, final String defaultValue) {
+        final Object value = config.containsKey(key) ? config.get(key) : defaultValue;
+        if (value == null || String.valueOf(value).trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<String> result = new ArrayList<>();
+        for (final String item : String.valueOf(value).trim().split("\\s*,\\s*")) {
+            result.add(item);
+        }
+        return result;
+    }
+
+    private static int getInt(final Map<String, Object> config, final String key, final int defaultValue) {
+        final Object value = config.get(key);
+        return value != null ? Integer.parseInt(String.valueOf(value)) : defaultValue;
+    }
+
+    String dispatch(final String envelope, final HttpHeaders requestHeaders) {
+        if (!batchPermits.tryAcquire()) {
+            throw new ServiceUnavailableException("Too many batches are in progress", RETRY_AFTER_SECONDS);
+        }
+        try {
+            return dispatchBatch(envelope, requestHeaders);
+        } finally {
+            batchPermits.release();
+        }
+    }
+
+    private String dispatchBatch(final String envelope, final HttpHeaders requestHeaders) {
+        // credentials of the batch request are forwarded to sub-requests
+        final Map<String, String> credentials = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        credentialsHeaders.forEach(name -> {
+            final List<String> values = requestHeaders != null ? requestHeaders.getRequestHeader(name) : null;
+            if (values != null && !values.isEmpty()) {
+                credentials.put(name, String.join(HttpHeaders.COOKIE.equalsIgnoreCase(name) ? "; " : ",", values));
+            }
+        });
+
+        final JsonNode parts;
+        try {
+            parts = objectMapper.readTree(envelope);
+        } catch (IOException ex) {
+            throw new BadRequestException("Invalid batch envelope", ex);
+        }
+        if (parts == null || !parts.isArray()) {
+            throw new BadRequestException("Batch envelope must be a JSON array of requests");
+        }
+        if (maxRequests > 0 && parts.size() > maxRequests) {
+            throw new WebApplicationException("Too many requests in batch, maximum is " + maxRequests, Response.Status.REQUEST_ENTITY_TOO_LARGE);
+        }
+
+        final List<Future<ObjectNode>> futures = new ArrayList<>(parts.size());
+        for (final JsonNode part : parts) {
+            try {
+                futures.add(executor.submit(() -> invoke(part, credentials)));
+            } catch (RejectedExecutionException ex) {
+                futures.add(CompletableFuture.completedFuture(createError(part, STATUS_TOO_MANY_REQUESTS, "Batch executor is busy")));
+            }
+        }
+
+        final ArrayNode result = objectMapper.createArrayNode();
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        for (int i = 0; i < futures.size(); i++) {
+            final Future<ObjectNode> future = futures.get(i);
+            try {
+                result.add(future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException ex) {
+                future.cancel(true);
+                result.add(createError(parts.get(i), Response.Status.GATEWAY_TIMEOUT.getStatusCode(), "Request timed out"));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                throw new ServiceUnavailableException("Batch processing interrupted");
+            } catch (ExecutionException ex) {
+                log.warn("Unable to process batch request", ex.getCause());
+                result.add(createError(parts.get(i), Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), String.valueOf(ex.getCause())));
+            }
+        }
+        return result.toString();
+    }
+
+    private ObjectNode invoke(final JsonNode part, final Map<String, String> credentials) throws IOException {
+        final String method = part.path("method").asText(HttpMethod.GET).toUpperCase(Locale.ROOT);
+        final String uri = part.path("path").asText(null);
+        if (uri == null || !uri.startsWith("/")) {
+            return createError(part, Response.Status.BAD_REQUEST.getStatusCode(), "Absolute path is required");
+        }
+        final int queryIndex = uri.indexOf('?');
+        final String path = queryIndex >= 0 ? uri.substring(0, queryIndex) : uri;
+        final String targetApplicationPath = localClientFactory.resolveApplicationPath(path);
+        if (targetApplicationPath == null) {
+            return createError(part, Response.Status.NOT_FOUND.getStatusCode(), "No application is available on local transport for path " + path);
+        }
+        if (targets.stream().noneMatch(target -> targetApplicationPath.equals(localClientFactory.resolveApplicationPath(target)))) {
+            return createError(part, Response.Status.FORBIDDEN.getStatusCode(), "Application is not a target of batch requests: " + targetApplicationPath);
+        }
+        if (applicationPath != null && targetApplicationPath.equals(localClientFactory.resolveApplicationPath(applicationPath))) {
+            // nested batches would exhaust the executor
+            return createError(part, Response.Status.BAD_REQUEST.getStatusCode(), "Nested batches are not supported");
+        }
+
+        final WebClient client = localClientFactory.createWebClient(targetApplicationPath);
+        try {
+            final String relativePath = "/".equals(targetApplicationPath) ? path : path.substring(targetApplicationPath.length());
+            client.path(relativePath);
+            if (queryIndex >= 0) {
+                client.replaceQuery(uri.substring(queryIndex + 1));
+            }
+            client.accept(MediaType.APPLICATION_JSON_TYPE, MediaType.WILDCARD_TYPE);
+
+            credentials.forEach(client::header);
+
+            String contentType = null;
+            final Iterator<Map.Entry<String, JsonNode>> headers = part.path("headers").fields();
+            while (headers.hasNext()) {
+                final Map.Entry<String, JsonNode> header = headers.next();
+                if (credentialsHeaders.stream().anyMatch(header.getKey()::equalsIgnoreCase)) {
+                    log.debug("Credentials header of batch request is ignored: {}", header.getKey());
+                } else if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(header.getKey())) {
+                    contentType = header.getValue().asText();
+                } else if (HttpHeaders.ACCEPT.equalsIgnoreCase(header.getKey())) {
+                    client.replaceHeader(HttpHeaders.ACCEPT, header.getValue().asText());
+                } else {
+                    client.header(header.getKey(), header.getValue().asText());
+                }
+            }
+
+            final JsonNode body = part.get("body");
+            final Response response;
+            if (body == null || body.isNull()) {
+                response = client.invoke(method, null);
+            } else if (body.isTextual() && BASE64_ENCODING.equalsIgnoreCase(part.path(BODY_ENCODING).asText())) {
+                client.type(contentType != null ? contentType : MediaType.APPLICATION_OCTET_STREAM);
+                try {
+                    response = client.invoke(method, Base64.getDecoder().decode(body.asText()));
+                } catch (IllegalArgumentException ex) {
+                    return createError(part, Response.Status.BAD_REQUEST.getStatusCode(), "Invalid Base64 body");
+                }
+            } else if (body.isTextual()) {
+                client.type(contentType != null ? contentType : MediaType.TEXT_PLAIN);
+                response = client.invoke(method, body.asText());
+            } else {
+                client.type(contentType != null ? contentType : MediaType.APPLICATION_JSON);
+                response = client.invoke(method, objectMapper.writeValueAsString(body));
+            }
+
+            try {
+                final ObjectNode result = createResult(part, response.getStatus());
+                final ObjectNode responseHeaders = result.putObject("headers");
+                response.getStringHeaders().forEach((name, values) -> {
+                    if (values != null && !values.isEmpty()) {
+                        responseHeaders.put(name, String.join(",", values));
+                    }
+                });
+                if (response.hasEntity()) {
+                    if (isText(response.getMediaType())) {
+                        result.set("body", readBody(response));
+                    } else {
+                        final byte[] entity = response.readEntity(byte[].class);
+                        if (entity != null && entity.length > 0) {
+                            result.put(BODY_ENCODING, BASE64_ENCODING);
+                            result.put("body", Base64.getEncoder().encodeToString(entity));
+                        }
+                    }
+                }
+                return result;
+            } finally {
+                response.close();
+            }
+        } finally {
+            client.close();
+        }
+    }
+
+    private static boolean isText(final MediaType mediaType) {
+        if (mediaType == null) {
+            return false;
+        }
+        final String type = mediaType.getType().toLowerCase(Locale.ROOT);
+        final String subtype = mediaType.getSubtype().toLowerCase(Locale.ROOT);
+        return "text".equals(type)
+                || subtype.equals("json") || subtype.endsWith("+json")
+                || subtype.equals("xml") || subtype.endsWith("+xml")
+                || subtype.equals("javascript") || subtype.equals("x-www-form-urlencoded");
+    }
+
+    private JsonNode readBody(final Response response) {
+        final String entity = response.readEntity(String.class);
+        if (entity == null || entity.isEmpty()) {
+            return null;
+        }
+        final MediaType mediaType = response.getMediaType();
+        if (mediaType != null && (mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE) || mediaType.getSubtype().endsWith("+json"))) {
+            try {
+                return objectMapper.readTree(entity);
+            } catch (IOException ex) {
+                log.debug("Invalid JSON response of batch request, returning it as text", ex);
+            }
+        }
+        return objectMapper.getNodeFactory().textNode(entity);
+    }
+
+    private ObjectNode createResult(final JsonNode part, final int status) {
+        final ObjectNode result = objectMapper.createObjectNode();
+        if (part.has("id")) {
+            result.set("id", part.get("id"));
+        }
+        result.put("status", status);
+        return result;
+    }
+
+    private ObjectNode createError(final JsonNode part, final int status, final String message) {
+        final ObjectNode result = createResult(part, status);
+        result.putObject("headers").put(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN);
+        result.put("body", message);
+        return result;
+    }
+
+    @Override
+    public Set<Object> getSingletons() {
+        return Collections.unmodifiableSet(singletons);
+    }
+
+    @Override
+    public Map<String, Object> getProperties() {
+        return Collections.unmodifiableMap(properties);
+    }
+
+    @Path("/")
+    public static class BatchResource {
+
+        private final BiFunction<String, HttpHeaders, String> dispatcher;
+
+        BatchResource(final BiFunction<String, HttpHeaders, String> dispatcher) {
+            this.dispatcher = dispatcher;
+        }
+
+        @POST
+        @Path("batch")
+        @Consumes(MediaType.APPLICATION_JSON)
+        @Produces(MediaType.APPLICATION_JSON)
+        public String batch(final String envelope, @Context final HttpHeaders headers) {
+            return dispatcher.apply(envelope, headers);
+        }
+    }
+}
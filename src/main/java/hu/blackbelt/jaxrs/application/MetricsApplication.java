@@ -0,0 +1,179 @@
+package hu.blackbelt.jaxrs.application;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hu.blackbelt.jaxrs.CxfContext;
+import hu.blackbelt.jaxrs.interceptors.LatencyRecorder;
+import hu.blackbelt.jaxrs.interceptors.SlowRequestDetector;
+import hu.blackbelt.jaxrs.interceptors.TrafficStatistics;
+import hu.blackbelt.jaxrs.metrics.Histogram;
+import hu.blackbelt.jaxrs.metrics.PrometheusFormat;
+import hu.blackbelt.jaxrs.providers.ExtendedObjectMapperProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.osgi.framework.Constants;
+import org.osgi.service.component.annotations.*;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.InternalServerErrorException;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Application;
+import javax.ws.rs.core.MediaType;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * JAX-RS application publishing metrics collected by {@link LatencyRecorder} and {@link TrafficStatistics} interceptors
+ * in Prometheus text format and requests recorded by {@link SlowRequestDetector} interceptors in JSON format.
+ *
+ * <p>Application path must be set by <code>applicationPath</code> configuration property, metrics are available at
+ * <code>{applicationPath}/metrics</code>, slow requests at <code>{applicationPath}/slow-requests</code>.</p>
+ */
+@Component(immediate = true, service = Application.class, configurationPolicy = ConfigurationPolicy.REQUIRE)
+@Slf4j
+public class MetricsApplication extends Application {
+
+    private static final String LATENCY_METRIC_NAME = "jaxrs_request_duration_seconds";
+    private static final String REQUEST_SIZE_METRIC_NAME = "jaxrs_request_size_bytes";
+    private static final String RESPONSE_SIZE_METRIC_NAME = "jaxrs_response_size_bytes";
+    private static final double MICROS_TO_SECONDS = 1e-6;
+
+    @Reference(name = "cxf.context", cardinality = ReferenceCardinality.OPTIONAL, policyOption = ReferencePolicyOption.GREEDY)
+    private CxfContext cxfContext;
+
+    @Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY)
+    private volatile List<LatencyRecorder> latencyRecorders;
+
+    @Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY)
+    private volatile List<SlowRequestDetector> slowRequestDetectors;
+
+    @Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY)
+    private volatile List<TrafficStatistics> trafficStatistics;
+
+    private final ObjectMapper objectMapper = ExtendedObjectMapperProvider.getSharedExtendedObjectMapper();
+
+    private final Map<String, Object> properties = new TreeMap<>();
+    private final Set<Object> singletons = new LinkedHashSet<>();
+
+    @Activate
+    void start(final Map<String, Object> config) {
+        log.info("Starting JAX-RS metrics application: " + config.get(Constants.SERVICE_PID));
+        properties.putAll(config);
+        if (cxfContext != null) {
+            properties.put(BasicApplication.CONTEXT_PROPERTY_KEY, cxfContext);
+        }
+        singletons.add(new MetricsResource(this::getMetrics, this::getSlowRequests));
+    }
+
+    @Deactivate
+    void stop() {
+        properties.clear();
+        singletons.clear();
+    }
+
+    String getMetrics() {
+        final StringBuilder sb = new StringBuilder();
+        PrometheusFormat.writeHeader(sb, LATENCY_METRIC_NAME, "summary", "Latency of JAX-RS requests.");
+        final List<LatencyRecorder> recorders = latencyRecorders;
+        if (recorders != null) {
+            for (final LatencyRecorder recorder : recorders) {
+                final Map<LatencyRecorder.Endpoint, Histogram> histograms = new TreeMap<>(
+                        Comparator.comparing(LatencyRecorder.Endpoint::getApplicationPath).thenComparing(LatencyRecorder.Endpoint::getResourceMethod));
+                histograms.putAll(recorder.getHistograms());
+                histograms.forEach((endpoint, histogram) -> {
+                    final Map<String, String> labels = new LinkedHashMap<>();
+                    labels.put("application", endpoint.getApplicationPath());
+                    labels.put("resource", endpoint.getResourceMethod());
+                    PrometheusFormat.writeSummary(sb, LATENCY_METRIC_NAME, labels, histogram, MICROS_TO_SECONDS);
+                });
+            }
+        }
+
+        final List<TrafficStatistics> statistics = trafficStatistics;
+        if (statistics != null && !statistics.isEmpty()) {
+            final StringBuilder responseSizes = new StringBuilder();
+            PrometheusFormat.writeHeader(sb, REQUEST_SIZE_METRIC_NAME, "summary", "Payload size of JAX-RS requests.");
+            PrometheusFormat.writeHeader(responseSizes, RESPONSE_SIZE_METRIC_NAME, "summary", "Payload size of JAX-RS responses.");
+            for (final TrafficStatistics trafficStatistic : statistics) {
+                trafficStatistic.getPayloadSizes().forEach((applicationPath, sizes) -> {
+                    final Map<String, String> labels = Collections.singletonMap("application", applicationPath);
+                    PrometheusFormat.writeSummary(sb, REQUEST_SIZE_METRIC_NAME, labels, sizes.getRequestSizes(), 1.0);
+                    PrometheusFormat.writeSummary(responseSizes, RESPONSE_SIZE_METRIC_NAME, labels, sizes.getResponseSizes(), 1.0);
+                });
+            }
+            sb.append(responseSizes);
+        }
+        return sb.toString();
+    }
+
+    String getSlowRequests() {
+        final List<SlowRequestDetector.SlowRequest> slowRequests = new ArrayList<>();
+        final List<SlowRequestDetector> detectors = slowRequestDetectors;
+        if (detectors != null) {
+            detectors.forEach(detector -> slowRequests.addAll(detector.getSlowRequests()));
+        }
+        slowRequests.sort(Comparator.comparingLong(SlowRequestDetector.SlowRequest::getTimestamp).reversed());
+        try {
+            return objectMapper.writeValueAsString(slowRequests);
+        } catch (JsonProcessingException ex) {
+            log.error("Unable to serialize slow requests", ex);
+            throw new InternalServerErrorException(ex);
+        }
+    }
+
+    @Override
+    public Set<Object> getSingletons() {
+        return Collections.unmodifiableSet(singletons);
+    }
+
+    @Override
+    public Map<String, Object> getProperties() {
+        return Collections.unmodifiableMap(properties);
+    }
+
+    @Path("/")
+    public static class MetricsResource {
+
+        private final Supplier<String> metrics;
+        private final Supplier<String> slowRequests;
+
+        MetricsResource(final Supplier<String> metrics, final Supplier<String> slowRequests) {
+            this.metrics = metrics;
+            this.slowRequests = slowRequests;
+        }
+
+        @GET
+        @Path("metrics")
+        @Produces(PrometheusFormat.CONTENT_TYPE)
+        public String getMetrics() {
+            return metrics.get();
+        }
+
+        @GET
+        @Path("slow-requests")
+        @Produces(MediaType.APPLICATION_JSON)
+        public String getSlowRequests() {
+            return slowRequests.get();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package hu.blackbelt.jaxrs.application;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import hu.blackbelt.jaxrs.providers.FileContentProvider;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Resource serving files of a directory at <code>{applicationPath}/{prefix}/...</code>, added to
+ * {@link BasicApplication} by <code>jaxrs.static.directory</code> option.
+ *
+ * <p>Files are returned as {@link java.nio.file.Path} entities written by {@link FileContentProvider} (range and
+ * conditional requests, pooled transfer buffers). Symbolic links are resolved, files outside of the (real) directory are
+ * not served.</p>
+ *
+ * <p>Path of the resource class is replaced by the literal prefix ({@link #getPrefix()}) when the application is
+ * published so resource methods at the application root are not overridden by static content.</p>
+ */
+@Path("/")
+public class StaticContentResource {
+
+    private final java.nio.file.Path directory;
+    private final String prefix;
+
+    StaticContentResource(final String directory, final String prefix) {
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        String normalizedPrefix = prefix != null ? prefix.trim() : "";
+        while (normalizedPrefix.startsWith("/")) {
+            normalizedPrefix = normalizedPrefix.substring(1);
+        }
+        while (normalizedPrefix.endsWith("/")) {
+            normalizedPrefix = normalizedPrefix.substring(0, normalizedPrefix.length() - 1);
+        }
+        this.prefix = "/" + normalizedPrefix;
+    }
+
+    /**
+     * Get path of static files relative to the application path.
+     *
+     * @return prefix starting with <code>/</code>
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    @GET
+    @Path("{path: .+}")
+    public Response getContent(@PathParam("path") final String path) {
+        final java.nio.file.Path file;
+        try {
+            final java.nio.file.Path realDirectory = directory.toRealPath();
+            file = realDirectory.resolve(path).normalize().toRealPath();
+            if (!file.startsWith(realDirectory)) {
+                // do not serve files outside of the directory (ie. by symbolic links)
+                throw new NotFoundException();
+            }
+        } catch (IOException ex) {
+            throw new NotFoundException();
+        }
+        if (!Files.isRegularFile(file) || !Files.isReadable(file)) {
+            throw new NotFoundException();
+        }
+        return Response.ok(file, getMediaType(file)).build();
+    }
+
+    private static String getMediaType(final java.nio.file.Path file) {
+        try {
+            final String contentType = Files.probeContentType(file);
+            return contentType != null ? contentType : MediaType.APPLICATION_OCTET_STREAM;
+        } catch (IOException ex) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package hu.blackbelt.jaxrs.interceptors;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.cxf.endpoint.Endpoint;
+import org.apache.cxf.interceptor.Fault;
+import org.apache.cxf.interceptor.OutgoingChainInterceptor;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.AbstractPhaseInterceptor;
+import org.apache.cxf.phase.Phase;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base of IN interceptors that must be notified when processing of the request has been completed (response is sent
+ * or request processing is failed).
+ *
+ * <p>State returned by {@link #onStart(Message)} is stored in the exchange and passed to
+ * {@link #onComplete(Exchange, Object, boolean)} exactly once.</p>
+ *
+ * <p>Chains aborted without fault and asynchronous responses that are never resumed are not completed by CXF, so
+ * states (ie. permits) older than the completion timeout are expired as failed ones. Expiration is checked by incoming
+ * messages, at most once per tenth of the timeout.</p>
+ */
+public abstract class AbstractCompletionInterceptor<T> extends AbstractPhaseInterceptor<Message> {
+
+    /**
+     * Default completion timeout in milliseconds.
+     */
+    public static final long DEFAULT_COMPLETION_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+
+    private final String stateKey;
+    private final CompletionInterceptor completionInterceptor;
+
+    private final Set<Tracked<T>> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicLong lastExpiration = new AtomicLong(System.nanoTime());
+    private volatile long completionTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_COMPLETION_TIMEOUT);
+
+    protected AbstractCompletionInterceptor(final String phase) {
+        super(phase);
+        stateKey = getId() + "@" + Integer.toHexString(System.identityHashCode(this));
+        completionInterceptor = new CompletionInterceptor(stateKey);
+    }
+
+    @Override
+    public void handleMessage(final Message message) throws Fault {
+        final long now = System.nanoTime();
+        final long last = lastExpiration.get();
+        if (now - last > completionTimeoutNanos / 10 && lastExpiration.compareAndSet(last, now)) {
+            expire(now);
+        }
+
+        final T state = onStart(message);
+        if (state != null && message.getExchange() != null) {
+            final Tracked<T> tracked = new Tracked<>(message.getExchange(), state, now);
+            pending.add(tracked);
+            message.getExchange().put(stateKey, tracked);
+            message.getInterceptorChain().add(completionInterceptor);
+        }
+    }
+
+    @Override
+    public void handleFault(final Message message) {
+        if (message.getExchange() != null) {
+            complete(message.getExchange(), true);
+        }
+    }
+
+    /**
+     * Set timeout after that not completed states are expired.
+     *
+     * @param timeout completion timeout in milliseconds
+     */
+    protected void setCompletionTimeout(final long timeout) {
+        completionTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeout > 0 ? timeout : DEFAULT_COMPLETION_TIMEOUT);
+    }
+
+    /**
+     * Get number of states that are not completed yet.
+     *
+     * @return number of pending states
+     */
+    public int getPending() {
+        return pending.size();
+    }
+
+    /**
+     * Request processing is started.
+     *
+     * @param message IN message
+     * @return state of the request, completion is not tracked if it is <code>null</code>
+     * @throws Fault to reject the request
+     */
+    protected abstract T onStart(Message message) throws Fault;
+
+    /**
+     * Request processing is completed.
+     *
+     * @param exchange exchange
+     * @param state    state returned by {@link #onStart(Message)}
+     * @param fault    processing of the IN message is failed
+     */
+    protected abstract void onComplete(Exchange exchange, T state, boolean fault);
+
+    /**
+     * Get application path (address of the endpoint) of a message.
+     *
+     * @param message message
+     * @return application path or <code>null</code> if endpoint is unknown
+     */
+    public static String getApplicationPath(final Message message) {
+        final Exchange exchange = message.getExchange();
+        final Endpoint endpoint = exchange != null ? exchange.getEndpoint() : null;
+        return endpoint != null && endpoint.getEndpointInfo() != null ? endpoint.getEndpointInfo().getAddress() : null;
+    }
+
+    /**
+     * Get HTTP status code of the response.
+     *
+     * @param exchange exchange
+     * @return status code or <code>null</code> if it is not available
+     */
+    public static Integer getResponseCode(final Exchange exchange) {
+        final Message outMessage = exchange.getOutMessage() != null ? exchange.getOutMessage() : exchange.getOutFaultMessage();
+        return outMessage != null ? (Integer) outMessage.get(Message.RESPONSE_CODE) : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void complete(final Exchange exchange, final boolean fault) {
+        final Tracked<T> tracked = (Tracked<T>) exchange.remove(stateKey);
+        if (tracked != null && pending.remove(tracked)) {
+            onComplete(exchange, tracked.state, fault);
+        }
+    }
+
+    private void expire(final long now) {
+        for (final Tracked<T> tracked : pending) {
+            if (now - tracked.startedAt > completionTimeoutNanos && pending.remove(tracked)) {
+                tracked.exchange.remove(stateKey);
+                onComplete(tracked.exchange, tracked.state, true);
+            }
+        }
+    }
+
+    /**
+     * State of a request, compared by identity.
+     */
+    private static class Tracked<T> {
+        final Exchange exchange;
+        final T state;
+        final long startedAt;
+
+        Tracked(final Exchange exchange, final T state, final long startedAt) {
+            this.exchange = exchange;
+            this.state = state;
+            this.startedAt = startedAt;
+        }
+    }
+
+    /**
+     * Interceptor running after OUT chain of the response.
+     */
+    private class CompletionInterceptor extends AbstractPhaseInterceptor<Message> {
+
+        CompletionInterceptor(final String id) {
+            super(id + ".completion", Phase.POST_INVOKE);
+            addAfter(OutgoingChainInterceptor.class.getName());
+        }
+
+        @Override
+        public void handleMessage(final Message message) throws Fault {
+            complete(message.getExchange(), false);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package hu.blackbelt.jaxrs.interceptors;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.cxf.interceptor.Fault;
+import org.apache.cxf.interceptor.Interceptor;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.Phase;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Modified;
+
+import javax.ws.rs.ServiceUnavailableException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adaptive concurrency limiter (bulkhead) of JAX-RS applications.
+ *
+ * <p>Number of concurrent requests is limited per application (endpoint address). The limit is adjusted by the
+ * gradient of latencies: it is decreased if short term latency is growing compared to the long term (no-load)
+ * latency and increased by a queue allowance otherwise. Requests over the limit are rejected by
+ * <code>503 Service Unavailable</code> immediately. Permits of requests that are not completed within the completion
+ * timeout (ie. aborted chains) are released without latency sample.</p>
+ */
+@Slf4j
+@Component(immediate = true, configurationPolicy = ConfigurationPolicy.REQUIRE, service = {Interceptor.class, AdaptiveConcurrencyLimiter.class})
+public class AdaptiveConcurrencyLimiter extends AbstractCompletionInterceptor<AdaptiveConcurrencyLimiter.Permit> {
+
+    private static final String INITIAL_LIMIT_KEY = "limit.initial";
+    private static final String MIN_LIMIT_KEY = "limit.min";
+    private static final String MAX_LIMIT_KEY = "limit.max";
+    private static final String SMOOTHING_KEY = "limit.smoothing";
+    private static final String RTT_TOLERANCE_KEY = "rtt.tolerance";
+    private static final String LONG_WINDOW_KEY = "rtt.longWindow";
+    private static final String COMPLETION_TIMEOUT_KEY = "completionTimeout";
+
+    private static final int DEFAULT_INITIAL_LIMIT = 20;
+    private static final int DEFAULT_MIN_LIMIT = 1;
+    private static final int DEFAULT_MAX_LIMIT = 1000;
+    private static final double DEFAULT_SMOOTHING = 0.2;
+    private static final double DEFAULT_RTT_TOLERANCE = 1.5;
+    private static final int DEFAULT_LONG_WINDOW = 600;
+    private static final int SHORT_WINDOW = 10;
+
+    private volatile Settings settings = new Settings(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT, DEFAULT_SMOOTHING, DEFAULT_RTT_TOLERANCE, DEFAULT_LONG_WINDOW);
+
+    private final Map<String, Limit> limits = new ConcurrentHashMap<>();
+
+    public AdaptiveConcurrencyLimiter() {
+        super(Phase.RECEIVE);
+    }
+
+    @Activate
+    @Modified
+    void configure(final Map<String, Object> config) {
+        settings = new Settings(
+                getInt(config, INITIAL_LIMIT_KEY, DEFAULT_INITIAL_LIMIT),
+                getInt(config, MIN_LIMIT_KEY, DEFAULT_MIN_LIMIT),
+                getInt(config, MAX_LIMIT_KEY, DEFAULT_MAX_LIMIT),
+                getDouble(config, SMOOTHING_KEY, DEFAULT_SMOOTHING),
+                getDouble(config, RTT_TOLERANCE_KEY, DEFAULT_RTT_TOLERANCE),
+                getInt(config, LONG_WINDOW_KEY, DEFAULT_LONG_WINDOW));
+        final Object completionTimeout = config.get(COMPLETION_TIMEOUT_KEY);
+        setCompletionTimeout(completionTimeout != null ? Long.parseLong(String.valueOf(completionTimeout).trim()) : DEFAULT_COMPLETION_TIMEOUT);
+        // limits are estimated again using the new settings
+        limits.clear();
+        log.info("Update adaptive concurrency limiter: {}", settings);
+    }
+
+    @Override
+    protected Permit onStart(final Message message) throws Fault {
+        final String applicationPath = getApplicationPath(message);
+        final Limit limit = limits.computeIfAbsent(String.valueOf(applicationPath), k -> new Limit(settings));
+        if (!limit.tryAcquire()) {
+            limit.rejected.increment();
+            final Fault fault = new Fault(new ServiceUnavailableException("Concurrency limit exceeded"));
+            fault.setStatusCode(503);
+            throw fault;
+        }
+        return new Permit(limit, System.nanoTime());
+    }
+
+    @Override
+    protected void onComplete(final Exchange exchange, final Permit permit, final boolean fault) {
+        permit.getLimit().release(System.nanoTime() - permit.getStartedAt(), fault);
+    }
+
+    /**
+     * Get current limits and statistics of applications.
+     *
+     * @return limits by application path
+     */
+    public Map<String, LimitStatistics> getLimits() {
+        final Map<String, LimitStatistics> result = new TreeMap<>();
+        limits.forEach((applicationPath, limit) -> result.put(applicationPath, limit.getStatistics()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static int getInt(final Map<String, Object> config, final String key, final int defaultValue) {
+        final Object value = config.get(key);
+        return value != null ? Integer.parseInt(String.valueOf(value).trim()) : defaultValue;
+    }
+
+    private static double getDouble(final Map<String, Object> config, final String key, final double defaultValue) {
+        final Object value = config.get(key);
+        return value != null ? Double.parseDouble(String.valueOf(value).trim()) : defaultValue;
+    }
+
+    @Value
+    static class Settings {
+        int initialLimit;
+        int minLimit;
+        int maxLimit;
+        double smoothing;
+        double rttTolerance;
+        int longWindow;
+    }
+
+    @Value
+    static class Permit {
+        Limit limit;
+        long startedAt;
+    }
+
+    @Value
+    public static class LimitStatistics {
+        int limit;
+        int inFlight;
+        long accepted;
+        long rejected;
+        long shortRttMicros;
+        long longRttMicros;
+    }
+
+    /**
+     * Immutable estimation state, updated by compare-and-set.
+     */
+    @Value
+    private static class Estimation {
+        double limit;
+        double longRtt;
+        double shortRtt;
+        long samples;
+    }
+
+    static class Limit {
+
+        private final Settings settings;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicReference<Estimation> estimation;
+        private final LongAdder accepted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        Limit(final Settings settings) {
+            this.settings = settings;
+            this.estimation = new AtomicReference<>(new Estimation(settings.getInitialLimit(), 0, 0, 0));
+        }
+
+        boolean tryAcquire() {
+            final int limit = (int) estimation.get().getLimit();
+            for (;;) {
+                final int current = inFlight.get();
+                if (current >= limit) {
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    accepted.increment();
+                    return true;
+                }
+            }
+        }
+
+        void release(final long rttNanos, final boolean dropped) {
+            final int inFlightBefore = inFlight.getAndDecrement();
+            if (dropped) {
+                // failed requests are not representing latency of the application
+                return;
+            }
+
+            final Estimation current = estimation.get();
+            final double rtt = rttNanos;
+            final long samples = current.getSamples() + 1;
+            final double shortRtt = current.getShortRtt() == 0 ? rtt : current.getShortRtt() + (rtt - current.getShortRtt()) / SHORT_WINDOW;
+
+            // exponential moving average of latency over long window, it is following a decrease immediately
+            final double longWindow = Math.min(samples, settings.getLongWindow());
+            double longRtt = current.getLongRtt() == 0 ? rtt : current.getLongRtt() + (rtt - current.getLongRtt()) / longWindow;
+            if (longRtt / shortRtt > 2) {
+                // drift: long term latency is decreasing
+                longRtt *= 0.95;
+            }
+
+            double limit = current.getLimit();
+            if (inFlightBefore >= limit / 2) {
+                // application is not limited by the client load
+                final double gradient = Math.max(0.5, Math.min(1.0, settings.getRttTolerance() * longRtt / shortRtt));
+                final double queueSize = Math.sqrt(limit);
+                final double newLimit = limit * gradient + queueSize;
+                limit = limit * (1 - settings.getSmoothing()) + newLimit * settings.getSmoothing();
+                limit = Math.max(settings.getMinLimit(), Math.min(settings.getMaxLimit(), limit));
+            }
+
+            // estimation is lost if it has been updated concurrently, lock is not used for consistency
+            estimation.compareAndSet(current, new Estimation(limit, longRtt, shortRtt, samples));
+        }
+
+        LimitStatistics getStatistics() {
+            final Estimation current = estimation.get();
+            return new LimitStatistics((int) current.getLimit(), inFlight.get(), accepted.sum(), rejected.sum(),
+                    (long) current.getShortRtt() / 1000L, (long) current.getLongRtt() / 1000L);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package hu.blackbelt.jaxrs.interceptors;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.cxf.interceptor.Fault;
+import org.apache.cxf.interceptor.Interceptor;
+import org.apache.cxf.interceptor.InterceptorChain;
+import org.apache.cxf.interceptor.OutgoingChainInterceptor;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.AbstractPhaseInterceptor;
+import org.apache.cxf.phase.Phase;
+import org.apache.cxf.phase.PhaseInterceptor;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Modified;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sampling profiler of CXF IN interceptor chains.
+ *
+ * <p>1 of N requests is profiled: probe interceptors are inserted before each interceptor of phases from
+ * {@link Phase#RECEIVE} to {@link Phase#POST_LOGICAL} following the profiler, at {@link Phase#PRE_INVOKE} and before
+ * {@link OutgoingChainInterceptor}. Time between two probes is accounted to the interceptor between them, time from
+ * {@link Phase#PRE_INVOKE} until the OUT chain is started by {@link OutgoingChainInterceptor} is accounted to the
+ * resource invocation, writing the response (OUT chain) is not profiled. Profiler should be
+ * the first IN interceptor, statistics are aggregated per application. Requests not sampled cost a single counter
+ * increment.</p>
+ */
+@Slf4j
+@Component(immediate = true, configurationPolicy = ConfigurationPolicy.REQUIRE, service = {Interceptor.class, ChainProfiler.class})
+public class ChainProfiler extends AbstractPhaseInterceptor<Message> {
+
+    public static final String INVOCATION = "<invocation>";
+
+    private static final String SAMPLE_RATE_KEY = "sample.rate";
+    private static final int DEFAULT_SAMPLE_RATE = 100;
+
+    private static final Set<String> PROFILED_PHASES = new HashSet<>(Arrays.asList(
+            Phase.RECEIVE, Phase.PRE_STREAM, Phase.USER_STREAM, Phase.POST_STREAM, Phase.READ,
+            Phase.PRE_PROTOCOL, Phase.USER_PROTOCOL, Phase.POST_PROTOCOL, Phase.UNMARSHAL,
+            Phase.PRE_LOGICAL, Phase.USER_LOGICAL, Phase.POST_LOGICAL));
+
+    private final AtomicLong counter = new AtomicLong();
+    private final String probeIdPrefix;
+    private final Map<String, Map<Key, Statistics>> profiles = new ConcurrentHashMap<>();
+
+    private volatile int sampleRate = DEFAULT_SAMPLE_RATE;
+
+    public ChainProfiler() {
+        super(Phase.RECEIVE);
+        probeIdPrefix = getId() + "@" + Integer.toHexString(System.identityHashCode(this)) + ".probe.";
+    }
+
+    @Activate
+    @Modified
+    void configure(final Map<String, Object> config) {
+        final Object sampleRateValue = config.get(SAMPLE_RATE_KEY);
+        sampleRate = Math.max(1, sampleRateValue != null ? Integer.parseInt(String.valueOf(sampleRateValue).trim()) : DEFAULT_SAMPLE_RATE);
+        log.info("Update CXF interceptor chain profiler [sample rate=1/{}]", sampleRate);
+    }
+
+    @Override
+    public void handleMessage(final Message message) throws Fault {
+        if (counter.incrementAndGet() % sampleRate != 0) {
+            return;
+        }
+        final InterceptorChain chain = message.getInterceptorChain();
+        if (chain == null) {
+            return;
+        }
+
+        // collect interceptors following the profiler before changing the chain
+        final List<PhaseInterceptor<? extends Message>> profiled = new ArrayList<>();
+        final List<String> preInvokeIds = new ArrayList<>();
+        boolean following = false;
+        for (final Iterator<Interceptor<? extends Message>> it = chain.iterator(); it.hasNext(); ) {
+            final Interceptor<? extends Message> interceptor = it.next();
+            if (interceptor == this) {
+                following = true;
+            } else if (following && interceptor instanceof PhaseInterceptor) {
+                final PhaseInterceptor<? extends Message> phaseInterceptor = (PhaseInterceptor<? extends Message>) interceptor;
+                if (PROFILED_PHASES.contains(phaseInterceptor.getPhase())) {
+                    profiled.add(phaseInterceptor);
+                } else if (Phase.PRE_INVOKE.equals(phaseInterceptor.getPhase())) {
+                    preInvokeIds.add(phaseInterceptor.getId());
+                }
+            }
+        }
+
+        final Map<Key, Statistics> profile = profiles.computeIfAbsent(String.valueOf(AbstractCompletionInterceptor.getApplicationPath(message)), k -> new ConcurrentHashMap<>());
+        final Sample sample = new Sample(profile);
+        int index = 0;
+        for (final PhaseInterceptor<? extends Message> interceptor : profiled) {
+            final Probe probe = new Probe(probeIdPrefix + index++, interceptor.getPhase(), sample, new Key(interceptor.getPhase(), interceptor.getId()));
+            probe.addBefore(interceptor.getId());
+            chain.add(probe);
+        }
+        final Probe invocationProbe = new Probe(probeIdPrefix + index++, Phase.PRE_INVOKE, sample, new Key(Phase.INVOKE, INVOCATION));
+        invocationProbe.addBefore(preInvokeIds);
+        chain.add(invocationProbe);
+        final Probe completionProbe = new Probe(probeIdPrefix + index, Phase.POST_INVOKE, sample, null);
+        completionProbe.addBefore(OutgoingChainInterceptor.class.getName());
+        chain.add(completionProbe);
+    }
+
+    /**
+     * Get profiles of applications.
+     *
+     * @return statistics of interceptors (ordered by phases) by application path
+     */
+    public Map<String, List<InterceptorStatistics>> getProfiles() {
+        final Map<String, List<InterceptorStatistics>> result = new TreeMap<>();
+        profiles.forEach((applicationPath, profile) -> {
+            final List<InterceptorStatistics> statistics = new ArrayList<>();
+            profile.forEach((key, stats) -> statistics.add(stats.toInterceptorStatistics(key)));
+            statistics.sort(Comparator.comparingLong(InterceptorStatistics::getOrder));
+            result.put(applicationPath, Collections.unmodifiableList(statistics));
+        });
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Get aggregated time of phases per application.
+     *
+     * @return total time (in microseconds) by phase by application path
+     */
+    public Map<String, Map<String, Long>> getPhaseTotals() {
+        final Map<String, Map<String, Long>> result = new TreeMap<>();
+        getProfiles().forEach((applicationPath, statistics) -> {
+            final Map<String, Long> phases = new LinkedHashMap<>();
+            statistics.forEach(s -> phases.merge(s.getPhase(), s.getTotalMicros(), Long::sum));
+            result.put(applicationPath, Collections.unmodifiableMap(phases));
+        });
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Reset collected statistics.
+     */
+    public void reset() {
+        profiles.clear();
+    }
+
+    @Value
+    static class Key {
+        String phase;
+        String interceptorId;
+    }
+
+    @Value
+    public static class InterceptorStatistics {
+        String phase;
+        String interceptorId;
+        long count;
+        long totalMicros;
+        long maxMicros;
+        long order;
+
+        public long getMeanMicros() {
+            return count > 0 ? totalMicros / count : 0L;
+        }
+    }
+
+    /**
+     * Aggregated statistics of an interceptor.
+     */
+    private static class Statistics {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0L);
+        // first position of the interceptor in the chain, used for ordering
+        final long order;
+
+        Statistics(final long order) {
+            this.order = order;
+        }
+
+        void record(final long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        InterceptorStatistics toInterceptorStatistics(final Key key) {
+            return new InterceptorStatistics(key.getPhase(), key.getInterceptorId(), count.sum(),
+                    TimeUnit.NANOSECONDS.toMicros(totalNanos.sum()), TimeUnit.NANOSECONDS.toMicros(maxNanos.get()), order);
+        }
+    }
+
+    /**
+     * State of a profiled request, probes are called by a single thread.
+     */
+    private static class Sample {
+        final Map<Key, Statistics> profile;
+        Key current;
+        long startedAt;
+        int position;
+
+        Sample(final Map<Key, Statistics> profile) {
+            this.profile = profile;
+        }
+
+        void next(final Key next) {
+            final long now = System.nanoTime();
+            if (current != null) {
+                final int order = position;
+                profile.computeIfAbsent(current, k -> new Statistics(order)).record(now - startedAt);
+            }
+            position++;
+            current = next;
+            startedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Probe interceptor closing the measurement of the previous interceptor and starting the next one.
+     */
+    private static class Probe extends AbstractPhaseInterceptor<Message> {
+
+        private final Sample sample;
+        private final Key next;
+
+        Probe(final String id, final String phase, final Sample sample, final Key next) {
+            super(id, phase);
+            this.sample = sample;
+            this.next = next;
+        }
+
+        @Override
+        public void handleMessage(final Message message) throws Fault {
+            sample.next(next);
+        }
+    }
+}
@@ -39,7 +39,10 @@ import java.util.Map;
 @Component(immediate = true, configurationPolicy = ConfigurationPolicy.REQUIRE, service = Interceptor.class)
 public class ExchangeIdResponseWriter extends AbstractPhaseInterceptor<Message> {
 
-    private static final String RESPONSE_HEADER_KEY_EXCHANGE_ID = "X-Exchange-Id";
+    /**
+     * Response header containing exchange ID.
+     */
+    public static final String RESPONSE_HEADER_KEY_EXCHANGE_ID = "X-Exchange-Id";
 
     public ExchangeIdResponseWriter() {
         super(Phase.POST_LOGICAL);
@@ -0,0 +1,116 @@
+package hu.blackbelt.jaxrs.interceptors;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import hu.blackbelt.jaxrs.metrics.Histogram;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.cxf.interceptor.Fault;
+import org.apache.cxf.interceptor.Interceptor;
+import org.apache.cxf.jaxrs.model.OperationResourceInfo;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.Phase;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Deactivate;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Interceptor recording latencies (in microseconds) of JAX-RS requests per application and resource method.
+ *
+ * <p>Latency is measured from receiving the request until the response is sent. Requests not matching any resource
+ * method are recorded as {@value #UNMATCHED_RESOURCE}.</p>
+ */
+@Slf4j
+@Component(immediate = true, configurationPolicy = ConfigurationPolicy.REQUIRE, service = {Interceptor.class, LatencyRecorder.class})
+public class LatencyRecorder extends AbstractCompletionInterceptor<Long> {
+
+    public static final String UNMATCHED_RESOURCE = "<unmatched>";
+
+    private final Map<Endpoint, Histogram> histograms = new ConcurrentHashMap<>();
+
+    public LatencyRecorder() {
+        super(Phase.RECEIVE);
+    }
+
+    @Activate
+    void start() {
+        log.info("Starting JAX-RS latency recorder");
+    }
+
+    @Deactivate
+    void stop() {
+        histograms.clear();
+    }
+
+    @Override
+    protected Long onStart(final Message message) throws Fault {
+        return System.nanoTime();
+    }
+
+    @Override
+    protected void onComplete(final Exchange exchange, final Long startedAt, final boolean fault) {
+        final long latency = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startedAt);
+        final Message inMessage = exchange.getInMessage();
+        final Endpoint endpoint = new Endpoint(String.valueOf(inMessage != null ? getApplicationPath(inMessage) : null), getResourceMethod(exchange));
+
+        Histogram histogram = histograms.get(endpoint);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(endpoint, k -> new Histogram());
+        }
+        histogram.record(latency);
+    }
+
+    /**
+     * Get latency histograms (in microseconds).
+     *
+     * @return histograms by endpoint
+     */
+    public Map<Endpoint, Histogram> getHistograms() {
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    /**
+     * Get resource method name of an exchange.
+     *
+     * @param exchange exchange
+     * @return HTTP method and simple class name and method name of the matched resource method
+     */
+    public static String getResourceMethod(final Exchange exchange) {
+        final OperationResourceInfo ori = exchange.get(OperationResourceInfo.class);
+        if (ori == null || ori.getAnnotatedMethod() == null) {
+            return UNMATCHED_RESOURCE;
+        }
+        return (ori.getHttpMethod() != null ? ori.getHttpMethod() + " " : "") + ori.getClassResourceInfo().getServiceClass().getSimpleName() + "." + ori.getAnnotatedMethod().getName();
+    }
+
+    @Value
+    public static class Endpoint {
+        String applicationPath;
+        String resourceMethod;
+    }
+}
@@ -0,0 +1,269 @@
+package hu.blackbelt.jaxrs.interceptors;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.cxf.interceptor.Fault;
+import org.apache.cxf.interceptor.Interceptor;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.AbstractPhaseInterceptor;
+import org.apache.cxf.phase.Phase;
+import org.apache.cxf.transport.http.AbstractHTTPDestination;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Modified;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token bucket rate limiter of JAX-RS applications.
+ *
+ * <p>Buckets are keyed by application path (endpoint address) and client key (configured request header or remote
+ * address). Buckets are implemented by generic cell rate algorithm so a single compare-and-set is needed per request.
+ * Buckets are stored in stripes, refilled buckets (that are equivalent to new ones) are evicted when a stripe is
+ * accessed after the idle timeout or a new bucket is added to a full stripe. A full stripe is shrunk to 90% of its
+ * capacity in a single batch, least recently used buckets are evicted if there are not enough refilled buckets.
+ * Requests over the rate are rejected by <code>429 Too Many Requests</code>.</p>
+ */
+@Slf4j
+@Component(immediate = true, configurationPolicy = ConfigurationPolicy.REQUIRE, service = {Interceptor.class, RateLimiter.class})
+public class RateLimiter extends AbstractPhaseInterceptor<Message> {
+
+    private static final String RATE_KEY = "rate";
+    private static final String BURST_KEY = "burst";
+    private static final String CLIENT_HEADER_KEY = "client.header";
+    private static final String STRIPES_KEY = "stripes";
+    private static final String MAX_BUCKETS_PER_STRIPE_KEY = "stripe.maxBuckets";
+    private static final String IDLE_TIMEOUT_KEY = "idleTimeout";
+
+    private static final double DEFAULT_RATE = 100;
+    private static final int DEFAULT_STRIPES = 64;
+    private static final int DEFAULT_MAX_BUCKETS_PER_STRIPE = 16384;
+    private static final long DEFAULT_IDLE_TIMEOUT = 60;
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    // full stripes are shrunk to 90% of capacity so eviction cost is amortized over the next 10% of new buckets
+    private static final int EVICTION_TARGET_PERCENT = 90;
+
+    private volatile Stripe[] stripes = createStripes(DEFAULT_STRIPES);
+    private volatile long emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / DEFAULT_RATE);
+    private volatile long burstToleranceNanos = emissionIntervalNanos * (long) DEFAULT_RATE;
+    private volatile String clientHeader;
+    private volatile int maxBucketsPerStripe = DEFAULT_MAX_BUCKETS_PER_STRIPE;
+    private volatile long idleTimeoutNanos = TimeUnit.SECONDS.toNanos(DEFAULT_IDLE_TIMEOUT);
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public RateLimiter() {
+        super(Phase.RECEIVE);
+    }
+
+    @Activate
+    @Modified
+    void configure(final Map<String, Object> config) {
+        final Object rateValue = config.get(RATE_KEY);
+        final double rate = rateValue != null ? Double.parseDouble(String.valueOf(rateValue).trim()) : DEFAULT_RATE;
+        final Object burstValue = config.get(BURST_KEY);
+        final long burst = burstValue != null ? Long.parseLong(String.valueOf(burstValue).trim()) : Math.max(1L, (long) rate);
+        final Object stripesValue = config.get(STRIPES_KEY);
+        final int stripeCount = stripesValue != null ? Integer.parseInt(String.valueOf(stripesValue).trim()) : DEFAULT_STRIPES;
+        final Object maxBucketsValue = config.get(MAX_BUCKETS_PER_STRIPE_KEY);
+        final Object idleTimeoutValue = config.get(IDLE_TIMEOUT_KEY);
+
+        emissionIntervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+        burstToleranceNanos = emissionIntervalNanos * Math.max(1L, burst);
+        clientHeader = (String) config.get(CLIENT_HEADER_KEY);
+        maxBucketsPerStripe = maxBucketsValue != null ? Integer.parseInt(String.valueOf(maxBucketsValue).trim()) : DEFAULT_MAX_BUCKETS_PER_STRIPE;
+        idleTimeoutNanos = TimeUnit.SECONDS.toNanos(idleTimeoutValue != null ? Long.parseLong(String.valueOf(idleTimeoutValue).trim()) : DEFAULT_IDLE_TIMEOUT);
+        stripes = createStripes(stripeCount);
+
+        log.info("Update rate limiter [rate={}/s; burst={}; client header={}; stripes={}]", rate, burst, clientHeader, stripes.length);
+    }
+
+    @Override
+    public void handleMessage(final Message message) throws Fault {
+        final String key = AbstractCompletionInterceptor.getApplicationPath(message) + '\u0000' + getClientKey(message);
+        final long now = System.nanoTime();
+        final Stripe[] currentStripes = stripes;
+        final Stripe stripe = currentStripes[spread(key.hashCode()) & (currentStripes.length - 1)];
+
+        if (stripe.getBucket(key, now).tryAcquire(now)) {
+            accepted.increment();
+        } else {
+            rejected.increment();
+            final long retryAfterSeconds = Math.max(1L, TimeUnit.NANOSECONDS.toSeconds(emissionIntervalNanos));
+            final Fault fault = new Fault(new WebApplicationException(Response.status(TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                    .build()));
+            fault.setStatusCode(TOO_MANY_REQUESTS);
+            throw fault;
+        }
+    }
+
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Get number of (active and idle) buckets.
+     *
+     * @return bucket count
+     */
+    public int getBucketCount() {
+        int count = 0;
+        for (final Stripe stripe : stripes) {
+            count += stripe.buckets.size();
+        }
+        return count;
+    }
+
+    private String getClientKey(final Message message) {
+        final String header = clientHeader;
+        if (header != null) {
+            @SuppressWarnings("unchecked")
+            final Map<String, List<String>> headers = (Map<String, List<String>>) message.get(Message.PROTOCOL_HEADERS);
+            final List<String> values = headers != null ? headers.get(header) : null;
+            if (values != null && !values.isEmpty()) {
+                return values.get(0);
+            }
+        }
+        final HttpServletRequest request = (HttpServletRequest) message.get(AbstractHTTPDestination.HTTP_REQUEST);
+        return request != null ? request.getRemoteAddr() : "";
+    }
+
+    private static int spread(final int hashCode) {
+        return hashCode ^ (hashCode >>> 16);
+    }
+
+    private Stripe[] createStripes(final int count) {
+        // number of stripes is rounded up to power of 2
+        final int size = Integer.highestOneBit(Math.max(1, count - 1) << 1);
+        final Stripe[] result = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = new Stripe();
+        }
+        return result;
+    }
+
+    private class Stripe {
+
+        private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+        private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+        private final AtomicBoolean evicting = new AtomicBoolean();
+
+        Bucket getBucket(final String key, final long now) {
+            final long last = lastSweep.get();
+            if (now - last > idleTimeoutNanos && lastSweep.compareAndSet(last, now)) {
+                sweep(now, Integer.MAX_VALUE);
+            }
+            final Bucket bucket = buckets.get(key);
+            if (bucket != null) {
+                return bucket;
+            }
+            // a single thread shrinks a full stripe, others add their buckets meanwhile
+            if (buckets.size() >= maxBucketsPerStripe && evicting.compareAndSet(false, true)) {
+                try {
+                    sweep(now, (int) ((long) maxBucketsPerStripe * EVICTION_TARGET_PERCENT / 100));
+                } finally {
+                    evicting.set(false);
+                }
+            }
+            return buckets.computeIfAbsent(key, k -> new Bucket(now));
+        }
+
+        private void sweep(final long now, final int targetSize) {
+            List<Map.Entry<Map.Entry<String, Bucket>, Long>> candidates = null;
+            for (final Iterator<Map.Entry<String, Bucket>> it = buckets.entrySet().iterator(); it.hasNext(); ) {
+                final Map.Entry<String, Bucket> entry = it.next();
+                final long tat = entry.getValue().theoreticalArrivalTime.get();
+                if (tat - now <= 0) {
+                    // bucket is refilled, it is equivalent to a new one
+                    it.remove();
+                    evictions.increment();
+                } else if (targetSize < Integer.MAX_VALUE) {
+                    if (candidates == null) {
+                        candidates = new ArrayList<>();
+                    }
+                    // buckets are updated concurrently so sorting is based on a snapshot
+                    candidates.add(new AbstractMap.SimpleImmutableEntry<>(entry, tat - now));
+                }
+            }
+            final int excess = buckets.size() - targetSize;
+            if (excess > 0 && candidates != null) {
+                // theoretical arrival time is increased by each accepted request, lowest ones are least recently used
+                candidates.sort(Map.Entry.comparingByValue());
+                for (int i = 0; i < excess && i < candidates.size(); i++) {
+                    final Map.Entry<String, Bucket> entry = candidates.get(i).getKey();
+                    if (buckets.remove(entry.getKey(), entry.getValue())) {
+                        evictions.increment();
+                    }
+                }
+            }
+        }
+    }
+
+    private class Bucket {
+
+        private final AtomicLong theoreticalArrivalTime;
+
+        Bucket(final long now) {
+            theoreticalArrivalTime = new AtomicLong(now);
+        }
+
+        boolean tryAcquire(final long now) {
+            for (;;) {
+                final long tat = theoreticalArrivalTime.get();
+                final long newTat = Math.max(tat - now, 0L) + now + emissionIntervalNanos;
+                if (newTat - now > burstToleranceNanos) {
+                    return false;
+                }
+                if (theoreticalArrivalTime.compareAndSet(tat, newTat)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package hu.blackbelt.jaxrs.interceptors;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.cxf.interceptor.Fault;
+import org.apache.cxf.interceptor.Interceptor;
+import org.apache.cxf.interceptor.OutgoingChainInterceptor;
+import org.apache.cxf.jaxrs.interceptor.JAXRSInInterceptor;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.AbstractPhaseInterceptor;
+import org.apache.cxf.phase.Phase;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Collectors;
+
+/**
+ * Interceptor recording requests exceeding latency threshold of the application.
+ *
+ * <p>Records contain exchange ID (created by {@link ExchangeIdDecorator}), the matched resource method and time spent
+ * in stages of request processing: <code>receive</code> (until {@link Phase#UNMARSHAL}), <code>unmarshal</code>
+ * (resource matching and reading parameters), <code>invoke</code> (resource invocation) and <code>write</code>
+ * (writing response). Stages are coarse on purpose, only three interceptors are added to the chain of each request;
+ * time spent by each phase and interceptor is measured by {@link ChainProfiler}. If stack sampling is enabled, stack of
+ * the thread processing the request is captured by a watchdog once the request is running over the threshold, the
+ * thread is updated at start of each stage so requests dispatched to an executor or resumed asynchronously are sampled
+ * on the right thread. Records are stored in a bounded ring buffer, the oldest ones are overwritten.</p>
+ */
+@Slf4j
+@Component(immediate = true, configurationPolicy = ConfigurationPolicy.REQUIRE, service = {Interceptor.class, SlowRequestDetector.class})
+public class SlowRequestDetector extends AbstractCompletionInterceptor<SlowRequestDetector.Tracker> {
+
+    private static final String THRESHOLD_KEY = "threshold";
+    private static final String THRESHOLDS_KEY = "thresholds";
+    private static final String BUFFER_SIZE_KEY = "buffer.size";
+    private static final String STACK_SAMPLING_PERIOD_KEY = "stackSampling.period";
+
+    private static final long DEFAULT_THRESHOLD = 1000;
+    private static final int DEFAULT_BUFFER_SIZE = 256;
+    private static final int MAX_STACK_DEPTH = 64;
+
+    private static final String RECEIVE_STAGE = "receive";
+    private static final String UNMARSHAL_STAGE = "unmarshal";
+    private static final String INVOKE_STAGE = "invoke";
+    private static final String WRITE_STAGE = "write";
+
+    private final String trackerKey = getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(this)) + ".tracker";
+    private final StageInterceptor unmarshalStage = new StageInterceptor(Phase.UNMARSHAL, UNMARSHAL_STAGE, JAXRSInInterceptor.class.getName());
+    private final StageInterceptor invokeStage = new StageInterceptor(Phase.PRE_INVOKE, INVOKE_STAGE, null);
+    private final StageInterceptor writeStage = new StageInterceptor(Phase.POST_INVOKE, WRITE_STAGE, OutgoingChainInterceptor.class.getName());
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final Set<Tracker> running = ConcurrentHashMap.newKeySet();
+
+    private volatile long defaultThresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_THRESHOLD);
+    private volatile Map<String, Long> thresholdNanos = Collections.emptyMap();
+    private volatile AtomicReferenceArray<SlowRequest> buffer = new AtomicReferenceArray<>(DEFAULT_BUFFER_SIZE);
+    private volatile boolean stackSampling;
+
+    private ScheduledExecutorService watchdog;
+
+    public SlowRequestDetector() {
+        super(Phase.RECEIVE);
+    }
+
+    @Activate
+    @Modified
+    synchronized void configure(final Map<String, Object> config) {
+        final Object thresholdValue = config.get(THRESHOLD_KEY);
+        defaultThresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdValue != null ? Long.parseLong(String.valueOf(thresholdValue).trim()) : DEFAULT_THRESHOLD);
+
+        // comma-separated list of applicationPath=threshold pairs
+        final Map<String, Long> thresholds = new HashMap<>();
+        final Object thresholdsValue = config.get(THRESHOLDS_KEY);
+        if (thresholdsValue != null) {
+            for (final String entry : String.valueOf(thresholdsValue).split("\\s*,\\s*")) {
+                final int separator = entry.lastIndexOf('=');
+                if (separator > 0) {
+                    thresholds.put(entry.substring(0, separator).trim(), TimeUnit.MILLISECONDS.toNanos(Long.parseLong(entry.substring(separator + 1).trim())));
+                } else if (!entry.trim().isEmpty()) {
+                    log.warn("Invalid slow request threshold, ignore it: " + entry);
+                }
+            }
+        }
+        thresholdNanos = thresholds;
+
+        final Object bufferSizeValue = config.get(BUFFER_SIZE_KEY);
+        final int bufferSize = Math.max(1, bufferSizeValue != null ? Integer.parseInt(String.valueOf(bufferSizeValue).trim()) : DEFAULT_BUFFER_SIZE);
+        if (buffer.length() != bufferSize) {
+            buffer = new AtomicReferenceArray<>(bufferSize);
+            sequence.set(0L);
+        }
+
+        final Object stackSamplingPeriodValue = config.get(STACK_SAMPLING_PERIOD_KEY);
+        final long stackSamplingPeriod = stackSamplingPeriodValue != null ? Long.parseLong(String.valueOf(stackSamplingPeriodValue).trim()) : 0L;
+        stopWatchdog();
+        stackSampling = stackSamplingPeriod > 0;
+        if (stackSampling) {
+            watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "slow-request-watchdog");
+                thread.setDaemon(true);
+                return thread;
+            });
+            watchdog.scheduleWithFixedDelay(this::sampleStacks, stackSamplingPeriod, stackSamplingPeriod, TimeUnit.MILLISECONDS);
+        }
+
+        log.info("Update slow request detector [threshold={}ms; thresholds={}; buffer size={}; stack sampling period={}ms]",
+                TimeUnit.NANOSECONDS.toMillis(defaultThresholdNanos), thresholdsValue, bufferSize, stackSamplingPeriod);
+    }
+
+    @Deactivate
+    synchronized void stop() {
+        stopWatchdog();
+        running.clear();
+    }
+
+    private void stopWatchdog() {
+        if (watchdog != null) {
+            watchdog.shutdownNow();
+            watchdog = null;
+        }
+        running.clear();
+    }
+
+    @Override
+    protected Tracker onStart(final Message message) throws Fault {
+        final String applicationPath = String.valueOf(getApplicationPath(message));
+        final Long threshold = thresholdNanos.get(applicationPath);
+        final Tracker tracker = new Tracker(applicationPath, threshold != null ? threshold : defaultThresholdNanos, Thread.currentThread());
+        message.getExchange().put(trackerKey, tracker);
+        message.getInterceptorChain().add(unmarshalStage);
+        message.getInterceptorChain().add(invokeStage);
+        message.getInterceptorChain().add(writeStage);
+        if (stackSampling) {
+            running.add(tracker);
+        }
+        return tracker;
+    }
+
+    @Override
+    protected void onComplete(final Exchange exchange, final Tracker tracker, final boolean fault) {
+        if (stackSampling) {
+            running.remove(tracker);
+        }
+        final long now = System.nanoTime();
+        final long duration = now - tracker.startedAt;
+        if (duration < tracker.thresholdNanos) {
+            return;
+        }
+        tracker.enter(null, now);
+
+        final Message inMessage = exchange.getInMessage();
+        final Integer status = getResponseCode(exchange);
+        final Map<String, Long> stages = new LinkedHashMap<>();
+        tracker.stages.forEach((stage, nanos) -> stages.put(stage, TimeUnit.NANOSECONDS.toMicros(nanos)));
+        final SlowRequest slowRequest = new SlowRequest(
+                System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(duration),
+                tracker.applicationPath,
+                (String) exchange.get(ExchangeIdDecorator.KEY_EXCHANGE_ID),
+                inMessage != null ? (String) inMessage.get(Message.HTTP_REQUEST_METHOD) : null,
+                inMessage != null ? (String) inMessage.get(Message.REQUEST_URI) : null,
+                LatencyRecorder.getResourceMethod(exchange),
+                status,
+                fault,
+                TimeUnit.NANOSECONDS.toMicros(duration),
+                Collections.unmodifiableMap(stages),
+                tracker.stackTrace);
+
+        final AtomicReferenceArray<SlowRequest> currentBuffer = buffer;
+        currentBuffer.set((int) (sequence.getAndIncrement() % currentBuffer.length()), slowRequest);
+        if (log.isDebugEnabled()) {
+            log.debug("Slow request detected: {}", slowRequest);
+        }
+    }
+
+    /**
+     * Get recorded slow requests.
+     *
+     * @return slow requests, the latest one is the first
+     */
+    public List<SlowRequest> getSlowRequests() {
+        final AtomicReferenceArray<SlowRequest> currentBuffer = buffer;
+        final List<SlowRequest> result = new ArrayList<>(currentBuffer.length());
+        for (int i = 0; i < currentBuffer.length(); i++) {
+            final SlowRequest slowRequest = currentBuffer.get(i);
+            if (slowRequest != null) {
+                result.add(slowRequest);
+            }
+        }
+        result.sort(Comparator.comparingLong(SlowRequest::getTimestamp).reversed());
+        return result;
+    }
+
+    /**
+     * Capture stack of threads processing requests that are running over the threshold.
+     */
+    private void sampleStacks() {
+        final long now = System.nanoTime();
+        for (final Tracker tracker : running) {
+            if (tracker.stackTrace == null && now - tracker.startedAt >= tracker.thresholdNanos) {
+                tracker.stackTrace = Arrays.stream(tracker.thread.getStackTrace())
+                        .limit(MAX_STACK_DEPTH)
+                        .map(StackTraceElement::toString)
+                        .collect(Collectors.toList());
+            }
+        }
+    }
+
+    /**
+     * State of a running request.
+     */
+    static class Tracker {
+        final String applicationPath;
+        final long thresholdNanos;
+        volatile Thread thread;
+        final long startedAt;
+        // stages are updated by the threads processing the request one after the other
+        final Map<String, Long> stages = new LinkedHashMap<>();
+        String stage = RECEIVE_STAGE;
+        long stageStartedAt;
+        volatile List<String> stackTrace;
+
+        Tracker(final String applicationPath, final long thresholdNanos, final Thread thread) {
+            this.applicationPath = applicationPath;
+            this.thresholdNanos = thresholdNanos;
+            this.thread = thread;
+            startedAt = System.nanoTime();
+            stageStartedAt = startedAt;
+        }
+
+        synchronized void enter(final String nextStage, final long now) {
+            if (stage != null) {
+                stages.merge(stage, now - stageStartedAt, Long::sum);
+            }
+            stage = nextStage;
+            stageStartedAt = now;
+        }
+    }
+
+    @Value
+    public static class SlowRequest {
+        long timestamp;
+        String applicationPath;
+        String exchangeId;
+        String httpMethod;
+        String requestUri;
+        String resourceMethod;
+        Integer status;
+        boolean fault;
+        long durationMicros;
+        Map<String, Long> stageMicros;
+        List<String> stackTrace;
+    }
+
+    /**
+     * Interceptor marking start of a stage.
+     */
+    private class StageInterceptor extends AbstractPhaseInterceptor<Message> {
+
+        private final String stage;
+
+        StageInterceptor(final String phase, final String stage, final String before) {
+            super(trackerKey + "." + stage, phase);
+            this.stage = stage;
+            if (before != null) {
+                addBefore(before);
+            }
+        }
+
+        @Override
+        public void handleMessage(final Message message) throws Fault {
+            final Tracker tracker = (Tracker) message.getExchange().get(trackerKey);
+            if (tracker != null) {
+                // stage may be running on another thread (ie. executor of the service or resumed response)
+                tracker.thread = Thread.currentThread();
+                tracker.enter(stage, System.nanoTime());
+            }
+        }
+    }
+}
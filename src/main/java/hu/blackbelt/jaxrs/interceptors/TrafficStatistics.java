@@ -0,0 +1,306 @@
+package hu.blackbelt.jaxrs.interceptors;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import hu.blackbelt.jaxrs.metrics.HeavyHitters;
+import hu.blackbelt.jaxrs.metrics.Histogram;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.cxf.interceptor.Fault;
+import org.apache.cxf.interceptor.Interceptor;
+import org.apache.cxf.interceptor.MessageSenderInterceptor;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.AbstractPhaseInterceptor;
+import org.apache.cxf.phase.Phase;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Traffic statistics of JAX-RS applications in bounded memory.
+ *
+ * <p>Top-K paths by request rate and by transferred bytes are estimated by count-min sketches in tumbling windows.
+ * Request and response payload sizes are recorded in histograms per application. The component registers an IN
+ * interceptor (<code>direction=in</code>, counting request bytes) and an OUT interceptor (<code>direction=out</code>,
+ * counting response bytes), both must be added to the CXF context. Configuration properties of the component are
+ * copied to the service of the OUT interceptor so the same filter expression can be used.</p>
+ */
+@Slf4j
+@Component(immediate = true, configurationPolicy = ConfigurationPolicy.REQUIRE, service = {Interceptor.class, TrafficStatistics.class},
+        property = TrafficStatistics.DIRECTION_KEY + "=" + TrafficStatistics.DIRECTION_IN)
+public class TrafficStatistics extends AbstractCompletionInterceptor<TrafficStatistics.Counters> {
+
+    public static final String DIRECTION_KEY = "direction";
+    public static final String DIRECTION_IN = "in";
+    public static final String DIRECTION_OUT = "out";
+
+    private static final String TOP_K_KEY = "topK";
+    private static final String SKETCH_WIDTH_KEY = "sketch.width";
+    private static final String SKETCH_DEPTH_KEY = "sketch.depth";
+    private static final String WINDOW_KEY = "window";
+
+    private static final int DEFAULT_TOP_K = 20;
+    private static final int DEFAULT_SKETCH_WIDTH = 2048;
+    private static final int DEFAULT_SKETCH_DEPTH = 4;
+    private static final long DEFAULT_WINDOW = 60;
+
+    private final String countersKey = getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(this)) + ".counters";
+    private final ResponseCounterInterceptor responseCounterInterceptor = new ResponseCounterInterceptor();
+    private ServiceRegistration<Interceptor> responseCounterRegistration;
+
+    private volatile HeavyHitters topByRequests;
+    private volatile HeavyHitters topByBytes;
+    private final Map<String, PayloadSizes> payloadSizes = new ConcurrentHashMap<>();
+
+    public TrafficStatistics() {
+        super(Phase.RECEIVE);
+    }
+
+    @Activate
+    void start(final BundleContext context, final Map<String, Object> config) {
+        configure(config);
+        responseCounterRegistration = context.registerService(Interceptor.class, responseCounterInterceptor, getResponseCounterProperties(config));
+    }
+
+    @Modified
+    void update(final Map<String, Object> config) {
+        configure(config);
+        if (responseCounterRegistration != null) {
+            responseCounterRegistration.setProperties(getResponseCounterProperties(config));
+        }
+    }
+
+    @Deactivate
+    void stop() {
+        if (responseCounterRegistration != null) {
+            try {
+                responseCounterRegistration.unregister();
+            } catch (IllegalStateException ex) {
+                log.debug("Unable to unregister response counter interceptor", ex);
+            }
+            responseCounterRegistration = null;
+        }
+        payloadSizes.clear();
+    }
+
+    private void configure(final Map<String, Object> config) {
+        final int topK = getInt(config, TOP_K_KEY, DEFAULT_TOP_K);
+        final int width = getInt(config, SKETCH_WIDTH_KEY, DEFAULT_SKETCH_WIDTH);
+        final int depth = getInt(config, SKETCH_DEPTH_KEY, DEFAULT_SKETCH_DEPTH);
+        final Object windowValue = config.get(WINDOW_KEY);
+        final long window = windowValue != null ? Long.parseLong(String.valueOf(windowValue).trim()) : DEFAULT_WINDOW;
+
+        topByRequests = new HeavyHitters(topK, width, depth, window, TimeUnit.SECONDS);
+        topByBytes = new HeavyHitters(topK, width, depth, window, TimeUnit.SECONDS);
+        log.info("Update traffic statistics [top K={}; sketch width={}; sketch depth={}; window={}s]", topK, width, depth, window);
+    }
+
+    private static Dictionary<String, Object> getResponseCounterProperties(final Map<String, Object> config) {
+        final Dictionary<String, Object> properties = new Hashtable<>();
+        config.forEach((key, value) -> {
+            if (!key.startsWith("service.") && !key.startsWith("component.") && !key.startsWith("felix.")) {
+                properties.put(key, value);
+            }
+        });
+        properties.put(DIRECTION_KEY, DIRECTION_OUT);
+        return properties;
+    }
+
+    private static int getInt(final Map<String, Object> config, final String key, final int defaultValue) {
+        final Object value = config.get(key);
+        return value != null ? Integer.parseInt(String.valueOf(value).trim()) : defaultValue;
+    }
+
+    @Override
+    protected Counters onStart(final Message message) throws Fault {
+        final Counters counters = new Counters(String.valueOf(getApplicationPath(message)),
+                message.get(Message.HTTP_REQUEST_METHOD) + " " + message.get(Message.REQUEST_URI));
+        final InputStream is = message.getContent(InputStream.class);
+        if (is != null) {
+            final CountingInputStream cis = new CountingInputStream(is);
+            counters.requestStream = cis;
+            message.setContent(InputStream.class, cis);
+        }
+        message.getExchange().put(countersKey, counters);
+        return counters;
+    }
+
+    @Override
+    protected void onComplete(final Exchange exchange, final Counters counters, final boolean fault) {
+        final long requestBytes = counters.requestStream != null ? counters.requestStream.count : 0L;
+        final long responseBytes = counters.responseStream != null ? counters.responseStream.count : 0L;
+
+        final HeavyHitters requests = topByRequests;
+        final HeavyHitters bytes = topByBytes;
+        requests.add(counters.path, 1L);
+        bytes.add(counters.path, requestBytes + responseBytes);
+
+        PayloadSizes sizes = payloadSizes.get(counters.applicationPath);
+        if (sizes == null) {
+            sizes = payloadSizes.computeIfAbsent(counters.applicationPath, k -> new PayloadSizes());
+        }
+        sizes.requestSizes.record(requestBytes);
+        sizes.responseSizes.record(responseBytes);
+    }
+
+    /**
+     * Get top paths (HTTP method and request URI) by number of requests.
+     *
+     * @return top paths of the last window
+     */
+    public List<HeavyHitters.Entry> getTopByRequests() {
+        return topByRequests.getTop();
+    }
+
+    /**
+     * Get top paths (HTTP method and request URI) by transferred (request and response payload) bytes.
+     *
+     * @return top paths of the last window
+     */
+    public List<HeavyHitters.Entry> getTopByBytes() {
+        return topByBytes.getTop();
+    }
+
+    /**
+     * Get payload size histograms (in bytes) of applications.
+     *
+     * @return payload sizes by application path
+     */
+    public Map<String, PayloadSizes> getPayloadSizes() {
+        return Collections.unmodifiableMap(new TreeMap<>(payloadSizes));
+    }
+
+    @Getter
+    public static class PayloadSizes {
+        private final Histogram requestSizes = new Histogram();
+        private final Histogram responseSizes = new Histogram();
+    }
+
+    /**
+     * Byte counters of a request.
+     */
+    static class Counters {
+        final String applicationPath;
+        final String path;
+        CountingInputStream requestStream;
+        volatile CountingOutputStream responseStream;
+
+        Counters(final String applicationPath, final String path) {
+            this.applicationPath = applicationPath;
+            this.path = path;
+        }
+    }
+
+    /**
+     * OUT interceptor wrapping output stream of the response, it must run after output stream is set by
+     * {@link MessageSenderInterceptor}.
+     */
+    private class ResponseCounterInterceptor extends AbstractPhaseInterceptor<Message> {
+
+        ResponseCounterInterceptor() {
+            super(TrafficStatistics.class.getName() + ".response", Phase.PREPARE_SEND);
+            addAfter(MessageSenderInterceptor.class.getName());
+        }
+
+        @Override
+        public void handleMessage(final Message message) throws Fault {
+            final Counters counters = message.getExchange() != null ? (Counters) message.getExchange().get(countersKey) : null;
+            final OutputStream os = message.getContent(OutputStream.class);
+            if (counters != null && os != null) {
+                final CountingOutputStream cos = new CountingOutputStream(os);
+                counters.responseStream = cos;
+                message.setContent(OutputStream.class, cos);
+            }
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        volatile long count;
+
+        CountingOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package hu.blackbelt.jaxrs.metrics;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free count-min sketch estimating frequencies of keys in bounded memory.
+ *
+ * <p>Estimations are never lower than the real counts, error is bounded by <code>e / width * total</code> with
+ * probability of <code>1 - e^-depth</code>.</p>
+ */
+public class CountMinSketch {
+
+    private final int depth;
+    private final int mask;
+    private final AtomicLongArray counts;
+
+    /**
+     * Create a new sketch.
+     *
+     * @param width number of counters per row, rounded up to power of 2
+     * @param depth number of rows (hash functions)
+     */
+    public CountMinSketch(final int width, final int depth) {
+        if (width < 1 || depth < 1) {
+            throw new IllegalArgumentException("Width and depth of count-min sketch must be positive");
+        }
+        final int w = Integer.highestOneBit(Math.max(1, width - 1)) << 1;
+        this.depth = depth;
+        this.mask = w - 1;
+        this.counts = new AtomicLongArray(w * depth);
+    }
+
+    /**
+     * Add count of a key.
+     *
+     * @param key   key
+     * @param count count to add
+     * @return estimated count of the key after adding
+     */
+    public long add(final Object key, final long count) {
+        final long hash = mix(key.hashCode());
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts.addAndGet(getIndex(hash, row), count));
+        }
+        return estimate;
+    }
+
+    /**
+     * Get estimated count of a key.
+     *
+     * @param key key
+     * @return estimated count
+     */
+    public long estimate(final Object key) {
+        final long hash = mix(key.hashCode());
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts.get(getIndex(hash, row)));
+        }
+        return estimate;
+    }
+
+    private int getIndex(final long hash, final int row) {
+        // double hashing: h1 + row * h2
+        final int h1 = (int) hash;
+        final int h2 = (int) (hash >>> 32) | 1;
+        return row * (mask + 1) + ((h1 + row * h2) & mask);
+    }
+
+    private static long mix(final int hashCode) {
+        // finalizer of MurmurHash3 (64 bit)
+        long h = hashCode * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
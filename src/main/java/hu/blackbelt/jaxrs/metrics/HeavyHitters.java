@@ -0,0 +1,163 @@
+package hu.blackbelt.jaxrs.metrics;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.Value;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Top-K heavy hitters of a stream of keys in tumbling time windows.
+ *
+ * <p>Counts are estimated by a {@link CountMinSketch}, at most 2 * K candidates (having the highest estimations) are
+ * kept per window. Updates are lock-free, candidates are trimmed by a single thread at a time without blocking the
+ * others.</p>
+ */
+public class HeavyHitters {
+
+    private final int k;
+    private final int width;
+    private final int depth;
+    private final long windowNanos;
+
+    private final AtomicReference<Window> current;
+    private volatile Window previous;
+
+    /**
+     * Create heavy hitters.
+     *
+     * @param k      number of top keys
+     * @param width  width of count-min sketch
+     * @param depth  depth of count-min sketch
+     * @param window length of windows
+     * @param unit   time unit of window length
+     */
+    public HeavyHitters(final int k, final int width, final int depth, final long window, final TimeUnit unit) {
+        this.k = Math.max(1, k);
+        this.width = width;
+        this.depth = depth;
+        this.windowNanos = Math.max(1L, unit.toNanos(window));
+        this.current = new AtomicReference<>(new Window(System.nanoTime()));
+    }
+
+    /**
+     * Add count of a key.
+     *
+     * @param key   key
+     * @param count count to add
+     */
+    public void add(final String key, final long count) {
+        if (count <= 0) {
+            return;
+        }
+        final Window window = getCurrentWindow(System.nanoTime());
+        window.offer(key, window.sketch.add(key, count));
+    }
+
+    /**
+     * Get top-K keys of the last completed window, keys of the current window are returned before completing the first
+     * window.
+     *
+     * @return top keys ordered by estimated count descending
+     */
+    public List<Entry> getTop() {
+        final long now = System.nanoTime();
+        final Window window = getCurrentWindow(now);
+        final Window last = previous;
+        if (last != null && window.startedAt - last.startedAt <= windowNanos) {
+            return last.getTop(windowNanos);
+        } else if (last != null) {
+            // no traffic in the last window
+            return Collections.emptyList();
+        }
+        return window.getTop(Math.max(1L, now - window.startedAt));
+    }
+
+    private Window getCurrentWindow(final long now) {
+        final Window window = current.get();
+        if (now - window.startedAt < windowNanos) {
+            return window;
+        }
+        final Window next = new Window(window.startedAt + (now - window.startedAt) / windowNanos * windowNanos);
+        if (current.compareAndSet(window, next)) {
+            previous = window;
+            return next;
+        }
+        return current.get();
+    }
+
+    @Value
+    public static class Entry {
+        String key;
+        long count;
+        double ratePerSecond;
+    }
+
+    private class Window {
+        final long startedAt;
+        final CountMinSketch sketch = new CountMinSketch(width, depth);
+        final Map<String, Long> candidates = new ConcurrentHashMap<>();
+        final AtomicBoolean trimming = new AtomicBoolean();
+        volatile long minimum;
+
+        Window(final long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        void offer(final String key, final long estimate) {
+            if (estimate < minimum && !candidates.containsKey(key)) {
+                return;
+            }
+            candidates.merge(key, estimate, Math::max);
+            if (candidates.size() > 2 * k && trimming.compareAndSet(false, true)) {
+                try {
+                    trim();
+                } finally {
+                    trimming.set(false);
+                }
+            }
+        }
+
+        private void trim() {
+            final List<Map.Entry<String, Long>> entries = new ArrayList<>(candidates.entrySet());
+            entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+            for (int i = k; i < entries.size(); i++) {
+                candidates.remove(entries.get(i).getKey(), entries.get(i).getValue());
+            }
+            minimum = entries.get(k - 1).getValue();
+        }
+
+        List<Entry> getTop(final long durationNanos) {
+            final double seconds = durationNanos / (double) TimeUnit.SECONDS.toNanos(1);
+            final List<Entry> top = new ArrayList<>();
+            candidates.keySet().forEach(key -> {
+                final long count = sketch.estimate(key);
+                top.add(new Entry(key, count, count / seconds));
+            });
+            top.sort(Comparator.comparingLong(Entry::getCount).reversed());
+            return Collections.unmodifiableList(top.size() > k ? new ArrayList<>(top.subList(0, k)) : top);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package hu.blackbelt.jaxrs.metrics;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative long values with log-linear buckets (HdrHistogram style).
+ *
+ * <p>Each power of 2 range is divided into {@value #SUB_BUCKET_COUNT} linear sub-buckets so relative error of
+ * percentiles is about 3%. Values are recorded by a single atomic increment, percentiles are calculated on read.</p>
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_VALUE_BITS = 42;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKET_COUNT = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0L);
+
+    /**
+     * Record a value, negative values are recorded as 0 and values over 2^42 are truncated.
+     *
+     * @param value value to record
+     */
+    public void record(final long value) {
+        final long v = Math.max(0L, Math.min(value, MAX_VALUE));
+        counts.incrementAndGet(getIndex(v));
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get value at a given percentile.
+     *
+     * @param percentile percentile (0.0 - 100.0)
+     * @return highest value of the bucket containing the percentile, 0 if histogram is empty
+     */
+    public long getValueAtPercentile(final double percentile) {
+        return getValuesAtPercentiles(percentile)[0];
+    }
+
+    /**
+     * Get values at given percentiles using the same snapshot of buckets.
+     *
+     * @param percentiles percentiles (0.0 - 100.0)
+     * @return highest values of the buckets containing the percentiles, 0 if histogram is empty
+     */
+    public long[] getValuesAtPercentiles(final double... percentiles) {
+        final long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        final long[] result = new long[percentiles.length];
+        if (total == 0) {
+            return result;
+        }
+        final long max = getMax();
+        for (int p = 0; p < percentiles.length; p++) {
+            final long rank = Math.max(1L, (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentiles[p])) / 100.0 * total));
+            long accumulated = 0;
+            result[p] = max;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                accumulated += snapshot[i];
+                if (accumulated >= rank) {
+                    result[p] = Math.min(getHighestValue(i), max);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    static int getIndex(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        final int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long getHighestValue(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKET_COUNT - 1;
+        final long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
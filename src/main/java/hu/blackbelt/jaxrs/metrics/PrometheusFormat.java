@@ -0,0 +1,124 @@
+package hu.blackbelt.jaxrs.metrics;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Map;
+
+/**
+ * Helper writing metrics in Prometheus text exposition format (version 0.0.4).
+ */
+public final class PrometheusFormat {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private PrometheusFormat() {
+    }
+
+    /**
+     * Write header (HELP and TYPE lines) of a metric family.
+     *
+     * @param sb   output
+     * @param name metric name
+     * @param type metric type (counter, gauge, summary)
+     * @param help description
+     */
+    public static void writeHeader(final StringBuilder sb, final String name, final String type, final String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Write a single sample.
+     *
+     * @param sb     output
+     * @param name   metric name
+     * @param labels labels of the sample
+     * @param value  value
+     */
+    public static void writeSample(final StringBuilder sb, final String name, final Map<String, String> labels, final double value) {
+        sb.append(name);
+        writeLabels(sb, labels, null);
+        sb.append(' ').append(formatValue(value)).append('\n');
+    }
+
+    /**
+     * Write a histogram as summary (quantiles, count and sum).
+     *
+     * @param sb        output
+     * @param name      metric name
+     * @param labels    labels of the samples
+     * @param histogram histogram
+     * @param scale     multiplier converting recorded values to the unit of the metric
+     */
+    public static void writeSummary(final StringBuilder sb, final String name, final Map<String, String> labels, final Histogram histogram, final double scale) {
+        final double[] percentiles = new double[QUANTILES.length];
+        for (int i = 0; i < QUANTILES.length; i++) {
+            percentiles[i] = QUANTILES[i] * 100.0;
+        }
+        final long[] values = histogram.getValuesAtPercentiles(percentiles);
+        for (int i = 0; i < QUANTILES.length; i++) {
+            sb.append(name);
+            writeLabels(sb, labels, String.valueOf(QUANTILES[i]));
+            sb.append(' ').append(formatValue(values[i] * scale)).append('\n');
+        }
+        sb.append(name).append("_count");
+        writeLabels(sb, labels, null);
+        sb.append(' ').append(histogram.getCount()).append('\n');
+        sb.append(name).append("_sum");
+        writeLabels(sb, labels, null);
+        sb.append(' ').append(formatValue(histogram.getSum() * scale)).append('\n');
+    }
+
+    private static void writeLabels(final StringBuilder sb, final Map<String, String> labels, final String quantile) {
+        if (labels.isEmpty() && quantile == null) {
+            return;
+        }
+        sb.append('{');
+        boolean first = true;
+        for (final Map.Entry<String, String> label : labels.entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            sb.append(label.getKey()).append("=\"").append(escape(label.getValue())).append('"');
+        }
+        if (quantile != null) {
+            if (!first) {
+                sb.append(',');
+            }
+            sb.append("quantile=\"").append(quantile).append('"');
+        }
+        sb.append('}');
+    }
+
+    private static String escape(final String value) {
+        return String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String formatValue(final double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+}
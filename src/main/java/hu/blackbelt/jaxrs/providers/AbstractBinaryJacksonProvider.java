@@ -0,0 +1,121 @@
+package hu.blackbelt.jaxrs.providers;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import hu.blackbelt.jaxrs.SharedProviderStore;
+import lombok.extern.slf4j.Slf4j;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.Map;
+
+/**
+ * Base of binary Jackson data format providers (Smile, CBOR).
+ *
+ * <p>Object mapper of the binary format is a copy of the referenced (or extended) JSON object mapper so modules and
+ * serialization inclusion are the same as the JSON payloads. Object mappers are shared by {@link ObjectMapperRegistry}
+ * and rebuilt only if configuration is changed.</p>
+ */
+@Slf4j
+abstract class AbstractBinaryJacksonProvider {
+
+    private ServiceRegistration<?> providerServiceRegistration;
+    private ObjectMapperRegistry.Key objectMapperKey;
+    private Object provider;
+
+    /**
+     * Create Jackson factory of the binary data format.
+     *
+     * @return Jackson factory
+     */
+    abstract JsonFactory createFactory();
+
+    /**
+     * Create JAX-RS message body reader/writer using a given object mapper.
+     *
+     * @param objectMapper object mapper
+     * @return JAX-RS provider
+     */
+    abstract Object createProvider(ObjectMapper objectMapper);
+
+    void register(final BundleContext context, final ObjectMapper objectMapper, final Map<String, Object> config) {
+        final String className = getClass().getSimpleName();
+        final ObjectMapperRegistry.Key newObjectMapperKey = ObjectMapperRegistry.Key.of(getClass().getName(), objectMapper, className + ".", config);
+        final boolean changed = !newObjectMapperKey.equals(objectMapperKey);
+        if (changed) {
+            // mapper is shared by providers of the same configuration, it is rebuilt only if configuration is changed
+            final ObjectMapper binaryObjectMapper = ObjectMapperRegistry.acquire(newObjectMapperKey, () -> createObjectMapper(objectMapper, config));
+            if (objectMapperKey != null) {
+                ObjectMapperRegistry.release(objectMapperKey);
+            }
+            objectMapperKey = newObjectMapperKey;
+            provider = createProvider(binaryObjectMapper);
+        }
+
+        final Dictionary<String, Object> props = new Hashtable<>();
+        final Object sharedProviderFilter = config.get(SharedProviderStore.APPLICATIONS_FILTER);
+        if (sharedProviderFilter != null) {
+            props.put(SharedProviderStore.APPLICATIONS_FILTER, sharedProviderFilter);
+        }
+        if (providerServiceRegistration != null && !changed) {
+            providerServiceRegistration.setProperties(props);
+            return;
+        }
+        unregisterService();
+        providerServiceRegistration = context.registerService(provider.getClass().getName(), provider, props);
+    }
+
+    private ObjectMapper createObjectMapper(final ObjectMapper objectMapper, final Map<String, Object> config) {
+        final ObjectMapper baseObjectMapper = objectMapper != null ? objectMapper : ExtendedObjectMapperProvider.getSharedExtendedObjectMapper();
+        final ObjectMapper binaryObjectMapper = baseObjectMapper.copyWith(createFactory());
+        binaryObjectMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+        binaryObjectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+        ObjectMapperRegistry.configureFeatures(binaryObjectMapper, getClass().getSimpleName() + ".", config);
+        return binaryObjectMapper;
+    }
+
+    void unregister() {
+        unregisterService();
+        if (objectMapperKey != null) {
+            ObjectMapperRegistry.release(objectMapperKey);
+            objectMapperKey = null;
+        }
+        provider = null;
+    }
+
+    private void unregisterService() {
+        if (providerServiceRegistration != null) {
+            try {
+                providerServiceRegistration.unregister();
+            } catch (IllegalStateException ex) {
+                log.debug("Unable to unregister binary Jackson provider", ex);
+            }
+            providerServiceRegistration = null;
+        }
+    }
+}
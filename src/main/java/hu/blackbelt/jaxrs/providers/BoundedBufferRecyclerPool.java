@@ -0,0 +1,134 @@
+package hu.blackbelt.jaxrs.providers;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import com.fasterxml.jackson.core.util.RecyclerPool;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of Jackson buffer recyclers (generator/parser encoding and output buffers).
+ *
+ * <p>Jackson uses thread-local buffer recyclers by default that are not reused if requests are served by many (or
+ * short-living) threads. This pool is shared by all threads, acquiring and releasing recyclers never blocks: a new
+ * recycler is allocated if the pool is empty and released recyclers are dropped if the pool is full.</p>
+ *
+ * <p>Only the capacity is serialized (with the object mapper owning the pool), a deserialized pool is an empty one
+ * with the same capacity.</p>
+ */
+public class BoundedBufferRecyclerPool implements RecyclerPool<BufferRecycler> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient BlockingQueue<BufferRecycler> recyclers;
+    private final int capacity;
+
+    private final transient LongAdder acquisitions = new LongAdder();
+    private final transient LongAdder allocations = new LongAdder();
+    private final transient LongAdder releases = new LongAdder();
+    private final transient LongAdder drops = new LongAdder();
+
+    public BoundedBufferRecyclerPool(final int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.recyclers = new ArrayBlockingQueue<>(this.capacity);
+    }
+
+    /**
+     * Rebuild transient state (queue and counters) of a deserialized pool.
+     *
+     * @return new pool of the same capacity
+     */
+    protected Object readResolve() {
+        return new BoundedBufferRecyclerPool(capacity);
+    }
+
+    @Override
+    public BufferRecycler acquirePooled() {
+        acquisitions.increment();
+        final BufferRecycler recycler = recyclers.poll();
+        if (recycler != null) {
+            return recycler;
+        }
+        allocations.increment();
+        return new BufferRecycler();
+    }
+
+    @Override
+    public void releasePooled(final BufferRecycler recycler) {
+        if (recyclers.offer(recycler)) {
+            releases.increment();
+        } else {
+            drops.increment();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get number of idle recyclers in the pool.
+     *
+     * @return pooled recycler count
+     */
+    public int getPooledCount() {
+        return recyclers.size();
+    }
+
+    public long getAcquisitions() {
+        return acquisitions.sum();
+    }
+
+    /**
+     * Get number of acquisitions that are served by a pooled recycler.
+     *
+     * @return pool hit count
+     */
+    public long getHits() {
+        return acquisitions.sum() - allocations.sum();
+    }
+
+    public long getAllocations() {
+        return allocations.sum();
+    }
+
+    public long getReleases() {
+        return releases.sum();
+    }
+
+    /**
+     * Get number of released recyclers that are dropped because the pool is full.
+     *
+     * @return dropped recycler count
+     */
+    public long getDrops() {
+        return drops.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedBufferRecyclerPool[capacity=" + capacity + "; pooled=" + getPooledCount() + "; acquisitions=" + getAcquisitions()
+                + "; allocations=" + getAllocations() + "; drops=" + getDrops() + "]";
+    }
+}
@@ -0,0 +1,104 @@
+package hu.blackbelt.jaxrs.providers;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream buffering written content up to a limit. Buffered content is written to the target stream and further
+ * content is passed through if the limit is exceeded.
+ */
+class BufferingOutputStream extends OutputStream {
+
+    private final OutputStream target;
+    private final int limit;
+
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private boolean overflowed;
+
+    BufferingOutputStream(final OutputStream target, final int limit) {
+        this.target = target;
+        this.limit = limit;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        if (overflowed) {
+            target.write(b, off, len);
+        } else if (buffer.size() + len <= limit) {
+            buffer.write(b, off, len);
+        } else {
+            overflowed = true;
+            buffer.writeTo(target);
+            buffer = null;
+            target.write(b, off, len);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (overflowed) {
+            target.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // target stream is closed by the caller if content is buffered
+        if (overflowed) {
+            target.close();
+        }
+    }
+
+    /**
+     * Check if the limit is exceeded and content is passed through to the target stream.
+     *
+     * @return <code>true</code> if content is not buffered
+     */
+    boolean isOverflowed() {
+        return overflowed;
+    }
+
+    /**
+     * Get buffered content.
+     *
+     * @return buffered content, <code>null</code> if limit is exceeded
+     */
+    byte[] toByteArray() {
+        return overflowed ? null : buffer.toByteArray();
+    }
+
+    /**
+     * Write buffered content to the target stream.
+     */
+    void writeBuffered() throws IOException {
+        if (!overflowed) {
+            buffer.writeTo(target);
+        }
+    }
+}
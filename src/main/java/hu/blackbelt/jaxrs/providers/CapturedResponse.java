@@ -0,0 +1,100 @@
+package hu.blackbelt.jaxrs.providers;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import hu.blackbelt.jaxrs.interceptors.ExchangeIdResponseWriter;
+import lombok.Getter;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import java.util.*;
+
+/**
+ * Serialized JAX-RS response (status, headers and entity) that can be replayed.
+ *
+ * <p>Transport headers are never captured, headers specific to the original exchange are excluded by the caller
+ * ({@link #DEFAULT_EXCLUDED_HEADERS} by default).</p>
+ */
+@Getter
+class CapturedResponse {
+
+    /**
+     * Headers specific to the original exchange that are not replayed by default.
+     */
+    static final Set<String> DEFAULT_EXCLUDED_HEADERS = Collections.singleton(ExchangeIdResponseWriter.RESPONSE_HEADER_KEY_EXCHANGE_ID);
+
+    private static final Set<String> TRANSPORT_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        TRANSPORT_HEADERS.addAll(Arrays.asList(HttpHeaders.CONTENT_LENGTH, HttpHeaders.DATE, "Connection", "Keep-Alive", "Transfer-Encoding"));
+    }
+
+    private final int status;
+    private final Map<String, List<String>> headers;
+    private final byte[] body;
+    private final long createdAt;
+
+    CapturedResponse(final int status, final MultivaluedMap<String, Object> headers, final byte[] body) {
+        this(status, headers, body, DEFAULT_EXCLUDED_HEADERS);
+    }
+
+    /**
+     * Capture response.
+     *
+     * @param status          status code
+     * @param headers         response headers
+     * @param body            serialized entity
+     * @param excludedHeaders names of headers that are not captured (case-insensitive)
+     */
+    CapturedResponse(final int status, final MultivaluedMap<String, Object> headers, final byte[] body, final Set<String> excludedHeaders) {
+        this.status = status;
+        this.body = body;
+        this.createdAt = System.currentTimeMillis();
+
+        final Map<String, List<String>> copy = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.forEach((name, values) -> {
+            if (!TRANSPORT_HEADERS.contains(name) && excludedHeaders.stream().noneMatch(name::equalsIgnoreCase) && values != null) {
+                final List<String> stringValues = new ArrayList<>(values.size());
+                values.forEach(v -> stringValues.add(String.valueOf(v)));
+                copy.put(name, Collections.unmodifiableList(stringValues));
+            }
+        });
+        this.headers = Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * Get the first value of a header.
+     *
+     * @param name header name (case-insensitive)
+     * @return header value or <code>null</code> if header is not set
+     */
+    String getHeader(final String name) {
+        final List<String> values = headers.get(name);
+        return values != null && !values.isEmpty() ? values.get(0) : null;
+    }
+
+    Response toResponse() {
+        final Response.ResponseBuilder builder = Response.status(status).entity(body);
+        headers.forEach((name, values) -> values.forEach(value -> builder.header(name, value)));
+        return builder.build();
+    }
+}
@@ -0,0 +1,458 @@
+package hu.blackbelt.jaxrs.providers;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.PhaseInterceptorChain;
+import org.osgi.service.component.annotations.*;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * GZIP/deflate compression of response entities and decompression of request entities.
+ *
+ * <p>Response entities are compressed only if client accepts the encoding, media type is allowed and size of the
+ * entity reaches the threshold. Small entities are buffered (up to threshold) and written without compression.</p>
+ *
+ * <p>Inflated size of request entities is limited, requests inflated over the limit are rejected with
+ * <code>413 Request Entity Too Large</code>.</p>
+ */
+@Provider
+@Priority(Priorities.ENTITY_CODER)
+@Slf4j
+@Component(immediate = true, configurationPolicy = ConfigurationPolicy.REQUIRE, service = CompressionProvider.class)
+public class CompressionProvider implements WriterInterceptor, ReaderInterceptor {
+
+    /**
+     * Request property skipping compression of the response entity if it is set to {@link Boolean#TRUE}, ie. by
+     * writers of partial content.
+     */
+    public static final String SKIP_COMPRESSION_PROPERTY = CompressionProvider.class.getName() + ".skip";
+
+    private static final String GZIP = "gzip";
+    private static final String X_GZIP = "x-gzip";
+    private static final String DEFLATE = "deflate";
+
+    private static final String THRESHOLD_KEY = "threshold";
+    private static final String MEDIA_TYPES_KEY = "mediaTypes";
+    private static final String LEVEL_KEY = "level";
+    private static final String DEFLATER_POOL_SIZE_KEY = "deflaterPoolSize";
+    private static final String MAX_INFLATED_SIZE_KEY = "maxInflatedSize";
+
+    private static final int DEFAULT_THRESHOLD = 1024;
+    private static final String DEFAULT_MEDIA_TYPES = "application/json, application/*+json, application/xml, application/*+xml, application/javascript, text/*";
+    private static final int DEFAULT_DEFLATER_POOL_SIZE = 2 * Runtime.getRuntime().availableProcessors();
+    private static final long DEFAULT_MAX_INFLATED_SIZE = 100L * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private volatile int threshold = DEFAULT_THRESHOLD;
+    private volatile List<MediaType> mediaTypes = parseMediaTypes(DEFAULT_MEDIA_TYPES);
+    private volatile long maxInflatedSize = DEFAULT_MAX_INFLATED_SIZE;
+    private volatile DeflaterPool gzipDeflaters;
+    private volatile DeflaterPool deflateDeflaters;
+
+    @Activate
+    @Modified
+    void configure(final Map<String, Object> config) {
+        final String className = getClass().getSimpleName();
+
+        final Object newThreshold = config.get(className + "." + THRESHOLD_KEY);
+        threshold = newThreshold != null ? Integer.parseInt(String.valueOf(newThreshold).trim()) : DEFAULT_THRESHOLD;
+
+        final Object newMediaTypes = config.get(className + "." + MEDIA_TYPES_KEY);
+        mediaTypes = parseMediaTypes(newMediaTypes != null ? String.valueOf(newMediaTypes) : DEFAULT_MEDIA_TYPES);
+
+        final Object newLevel = config.get(className + "." + LEVEL_KEY);
+        final int level = newLevel != null ? Integer.parseInt(String.valueOf(newLevel).trim()) : Deflater.DEFAULT_COMPRESSION;
+
+        final Object newPoolSize = config.get(className + "." + DEFLATER_POOL_SIZE_KEY);
+        final int poolSize = newPoolSize != null ? Integer.parseInt(String.valueOf(newPoolSize).trim()) : DEFAULT_DEFLATER_POOL_SIZE;
+
+        final Object newMaxInflatedSize = config.get(className + "." + MAX_INFLATED_SIZE_KEY);
+        maxInflatedSize = newMaxInflatedSize != null ? Long.parseLong(String.valueOf(newMaxInflatedSize).trim()) : DEFAULT_MAX_INFLATED_SIZE;
+
+        final DeflaterPool oldGzipDeflaters = gzipDeflaters;
+        final DeflaterPool oldDeflateDeflaters = deflateDeflaters;
+        gzipDeflaters = new DeflaterPool(poolSize, level, true);
+        deflateDeflaters = new DeflaterPool(poolSize, level, false);
+        if (oldGzipDeflaters != null) {
+            oldGzipDeflaters.close();
+        }
+        if (oldDeflateDeflaters != null) {
+            oldDeflateDeflaters.close();
+        }
+
+        log.info("Update compression provider [threshold={}; level={}; deflater pool size={}; max inflated size={}; media types={}]", threshold, level, poolSize, maxInflatedSize, mediaTypes);
+    }
+
+    @Deactivate
+    void stop() {
+        if (gzipDeflaters != null) {
+            gzipDeflaters.close();
+            gzipDeflaters = null;
+        }
+        if (deflateDeflaters != null) {
+            deflateDeflaters.close();
+            deflateDeflaters = null;
+        }
+    }
+
+    @Override
+    public Object aroundReadFrom(final ReaderInterceptorContext context) throws IOException {
+        final String contentEncoding = context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        if (contentEncoding != null) {
+            final String encoding = contentEncoding.trim().toLowerCase(Locale.ROOT);
+            if (GZIP.equals(encoding) || X_GZIP.equals(encoding)) {
+                context.setInputStream(limit(new GZIPInputStream(context.getInputStream(), BUFFER_SIZE)));
+                context.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+            } else if (DEFLATE.equals(encoding)) {
+                context.setInputStream(limit(new InflaterInputStream(context.getInputStream())));
+                context.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+            }
+        }
+        return context.proceed();
+    }
+
+    private InputStream limit(final InputStream inputStream) {
+        final long limit = maxInflatedSize;
+        return limit > 0 ? new LimitedInputStream(inputStream, limit) : inputStream;
+    }
+
+    @Override
+    public void aroundWriteTo(final WriterInterceptorContext context) throws IOException {
+        final MultivaluedMap<String, Object> headers = context.getHeaders();
+        if (headers.containsKey(HttpHeaders.CONTENT_ENCODING) || Boolean.TRUE.equals(context.getProperty(SKIP_COMPRESSION_PROPERTY))
+                || !isCompressible(context.getMediaType())) {
+            context.proceed();
+            return;
+        }
+
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        final String encoding = getAcceptedEncoding();
+        final DeflaterPool deflaters = GZIP.equals(encoding) ? gzipDeflaters : DEFLATE.equals(encoding) ? deflateDeflaters : null;
+        if (deflaters == null) {
+            context.proceed();
+            return;
+        }
+
+        final CompressingOutputStream outputStream = new CompressingOutputStream(context.getOutputStream(), headers, encoding, deflaters, threshold);
+        context.setOutputStream(outputStream);
+        try {
+            context.proceed();
+            outputStream.finish();
+        } finally {
+            outputStream.release();
+        }
+    }
+
+    private boolean isCompressible(final MediaType mediaType) {
+        if (mediaType == null) {
+            return false;
+        }
+        for (final MediaType allowed : mediaTypes) {
+            if (allowed.getSubtype().startsWith("*+")) {
+                if (allowed.getType().equalsIgnoreCase(mediaType.getType()) && mediaType.getSubtype().toLowerCase(Locale.ROOT).endsWith(allowed.getSubtype().substring(1).toLowerCase(Locale.ROOT))) {
+                    return true;
+                }
+            } else if (allowed.isCompatible(mediaType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get preferred content encoding accepted by the client of the current request. Quality values of explicit
+     * encodings are overriding the wildcard (<code>*</code>), ie. <code>gzip;q=0, *</code> is not accepting gzip.
+     *
+     * @return <code>gzip</code>, <code>deflate</code> or <code>null</code> if none of them is accepted
+     */
+    private static String getAcceptedEncoding() {
+        final Message message = PhaseInterceptorChain.getCurrentMessage();
+        if (message == null || message.getExchange() == null || message.getExchange().getInMessage() == null) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        final Map<String, List<String>> requestHeaders = (Map<String, List<String>>) message.getExchange().getInMessage().get(Message.PROTOCOL_HEADERS);
+        final List<String> acceptEncodings = requestHeaders != null ? requestHeaders.get(HttpHeaders.ACCEPT_ENCODING) : null;
+        if (acceptEncodings == null) {
+            return null;
+        }
+
+        // null: not listed, true: accepted (q > 0), false: refused (q = 0)
+        Boolean gzip = null;
+        Boolean deflate = null;
+        Boolean wildcard = null;
+        for (final String acceptEncoding : acceptEncodings) {
+            for (final String token : acceptEncoding.split(",")) {
+                final String[] parts = token.split(";");
+                final String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+                boolean accepted = true;
+                for (int i = 1; i < parts.length; i++) {
+                    final String param = parts[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            accepted = Double.parseDouble(param.substring(2)) > 0;
+                        } catch (NumberFormatException ex) {
+                            accepted = false;
+                        }
+                    }
+                }
+                if (GZIP.equals(coding) || X_GZIP.equals(coding)) {
+                    gzip = accepted || Boolean.TRUE.equals(gzip);
+                } else if (DEFLATE.equals(coding)) {
+                    deflate = accepted || Boolean.TRUE.equals(deflate);
+                } else if ("*".equals(coding)) {
+                    wildcard = accepted || Boolean.TRUE.equals(wildcard);
+                }
+            }
+        }
+        if (gzip != null ? gzip : Boolean.TRUE.equals(wildcard)) {
+            return GZIP;
+        }
+        return (deflate != null ? deflate : Boolean.TRUE.equals(wildcard)) ? DEFLATE : null;
+    }
+
+    private static List<MediaType> parseMediaTypes(final String mediaTypes) {
+        final List<MediaType> result = new ArrayList<>();
+        for (final String mediaType : mediaTypes.split("\\s*,\\s*")) {
+            if (!mediaType.trim().isEmpty()) {
+                try {
+                    result.add(MediaType.valueOf(mediaType.trim()));
+                } catch (IllegalArgumentException ex) {
+                    log.warn("Invalid media type of compression provider: " + mediaType);
+                }
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Input stream of inflated request entity rejecting the request if the limit is exceeded.
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+
+        private final long limit;
+        private long count;
+
+        LimitedInputStream(final InputStream in, final long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int read = super.read(b, off, len);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = super.skip(n);
+            if (skipped > 0) {
+                count(skipped);
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(final long bytes) {
+            count += bytes;
+            if (count > limit) {
+                throw new WebApplicationException("Inflated request entity is larger than " + limit + " bytes", Response.Status.REQUEST_ENTITY_TOO_LARGE);
+            }
+        }
+    }
+
+    /**
+     * Output stream buffering entity until threshold is reached and compressing it after that.
+     */
+    private static class CompressingOutputStream extends OutputStream {
+
+        private final OutputStream target;
+        private final MultivaluedMap<String, Object> headers;
+        private final String encoding;
+        private final DeflaterPool deflaters;
+
+        private byte[] buffer;
+        private int count;
+
+        private Deflater deflater;
+        private DeflaterOutputStream compressed;
+        private boolean passThrough;
+        private boolean finished;
+
+        CompressingOutputStream(final OutputStream target, final MultivaluedMap<String, Object> headers, final String encoding, final DeflaterPool deflaters, final int threshold) {
+            this.target = target;
+            this.headers = headers;
+            this.encoding = encoding;
+            this.deflaters = deflaters;
+            this.buffer = new byte[Math.max(threshold, 0)];
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            if (compressed != null) {
+                compressed.write(b, off, len);
+            } else if (passThrough) {
+                target.write(b, off, len);
+            } else if (count + len <= buffer.length) {
+                System.arraycopy(b, off, buffer, count, len);
+                count += len;
+            } else {
+                startCompression();
+                compressed.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // entity is not flushed until compression is decided
+            if (compressed != null) {
+                compressed.flush();
+            } else if (passThrough) {
+                target.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+            target.close();
+        }
+
+        void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (compressed != null) {
+                compressed.finish();
+            } else if (!passThrough) {
+                passThrough = true;
+                target.write(buffer, 0, count);
+            }
+            buffer = null;
+        }
+
+        void release() {
+            if (deflater != null) {
+                deflaters.release(deflater);
+                deflater = null;
+            }
+        }
+
+        private void startCompression() throws IOException {
+            headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+
+            deflater = deflaters.acquire();
+            compressed = GZIP.equals(encoding) ? new GzipOutputStream(target, deflater) : new DeflaterOutputStream(target, deflater, BUFFER_SIZE, false);
+            compressed.write(buffer, 0, count);
+            buffer = null;
+        }
+    }
+
+    /**
+     * GZIP output stream using an external (pooled) deflater, {@link java.util.zip.GZIPOutputStream} creates its own one.
+     */
+    private static class GzipOutputStream extends DeflaterOutputStream {
+
+        private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+        private final CRC32 crc = new CRC32();
+        private boolean trailerWritten;
+
+        GzipOutputStream(final OutputStream out, final Deflater deflater) throws IOException {
+            super(out, deflater, BUFFER_SIZE, false);
+            out.write(HEADER);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            super.write(b, off, len);
+            crc.update(b, off, len);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            super.finish();
+            if (!trailerWritten) {
+                trailerWritten = true;
+                final byte[] trailer = new byte[8];
+                writeInt((int) crc.getValue(), trailer, 0);
+                writeInt((int) def.getBytesRead(), trailer, 4);
+                out.write(trailer);
+            }
+        }
+
+        private static void writeInt(final int value, final byte[] buffer, final int offset) {
+            buffer[offset] = (byte) (value & 0xff);
+            buffer[offset + 1] = (byte) ((value >> 8) & 0xff);
+            buffer[offset + 2] = (byte) ((value >> 16) & 0xff);
+            buffer[offset + 3] = (byte) ((value >> 24) & 0xff);
+        }
+    }
+}
@@ -42,6 +42,11 @@ public class ExtendedObjectMapperProvider {
 
     ServiceRegistration<ObjectMapper> objectMapperServiceRegistration;
 
+    /**
+     * Create a new extended object mapper.
+     *
+     * @return new object mapper
+     */
     public static ObjectMapper getExtendedObjectMapper() {
         return new ObjectMapper()
                 .findAndRegisterModules()
@@ -53,6 +58,16 @@ public class ExtendedObjectMapperProvider {
                 .setSerializationInclusion(JsonInclude.Include.NON_NULL);
     }
 
+    /**
+     * Get the shared extended object mapper, modules are scanned only once. Shared mapper must not be reconfigured,
+     * use {@link ObjectMapper#copy()} or {@link #getExtendedObjectMapper()} to customize it.
+     *
+     * @return shared object mapper
+     */
+    public static ObjectMapper getSharedExtendedObjectMapper() {
+        return SharedObjectMapperHolder.INSTANCE;
+    }
+
     @Activate
     public void activate(BundleContext bundleContext) {
 
@@ -68,4 +83,8 @@ public class ExtendedObjectMapperProvider {
         objectMapperServiceRegistration.unregister();
     }
 
+    private static class SharedObjectMapperHolder {
+        static final ObjectMapper INSTANCE = getExtendedObjectMapper();
+    }
+
 }
@@ -0,0 +1,296 @@
+package hu.blackbelt.jaxrs.providers;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.osgi.service.component.annotations.*;
+
+import javax.annotation.Priority;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.Produces;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Writer of file content ({@link File}, {@link Path}, {@link FileChannel}, {@link FileRegion} and
+ * {@link MappedByteBuffer} entities) supporting single byte range requests and conditional requests.
+ *
+ * <p>Content is copied to the output stream of the transport by pooled buffers (files are read by positional reads
+ * into direct buffers), no per-request buffers are allocated. Output streams of CXF transports are wrapped, so
+ * zero-copy transfer to sockets is not supported. Strong ETags are
+ * calculated from size and last modification time of files (without reading content) unless the resource sets
+ * <code>ETag</code> header.</p>
+ */
+@Provider
+@Produces(MediaType.WILDCARD)
+@Priority(Priorities.HEADER_DECORATOR)
+@Slf4j
+@Component(immediate = true, configurationPolicy = ConfigurationPolicy.REQUIRE, service = FileContentProvider.class)
+public class FileContentProvider implements MessageBodyWriter<Object>, ContainerResponseFilter {
+
+    private static final String BUFFER_SIZE_KEY = "bufferSize";
+    private static final String POOL_SIZE_KEY = "poolSize";
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_POOL_SIZE = 2 * Runtime.getRuntime().availableProcessors();
+
+    private static final String ACCEPT_RANGES = "Accept-Ranges";
+    private static final String CONTENT_RANGE = "Content-Range";
+    private static final String RANGE = "Range";
+    private static final String IF_RANGE = "If-Range";
+    private static final String BYTES_UNIT = "bytes";
+
+    private volatile TransferBufferPool buffers = new TransferBufferPool(DEFAULT_POOL_SIZE, DEFAULT_BUFFER_SIZE);
+
+    @Activate
+    @Modified
+    void configure(final Map<String, Object> config) {
+        final String className = getClass().getSimpleName();
+
+        final Object newBufferSize = config.get(className + "." + BUFFER_SIZE_KEY);
+        final int bufferSize = newBufferSize != null ? Integer.parseInt(String.valueOf(newBufferSize).trim()) : DEFAULT_BUFFER_SIZE;
+        final Object newPoolSize = config.get(className + "." + POOL_SIZE_KEY);
+        final int poolSize = newPoolSize != null ? Integer.parseInt(String.valueOf(newPoolSize).trim()) : DEFAULT_POOL_SIZE;
+
+        buffers = new TransferBufferPool(poolSize, bufferSize);
+        log.info("Update file content provider [buffer size={}; pool size={}]", bufferSize, poolSize);
+    }
+
+    @Override
+    public void filter(final ContainerRequestContext requestContext, final ContainerResponseContext responseContext) throws IOException {
+        if (responseContext.getStatus() != Response.Status.OK.getStatusCode()
+                || !(HttpMethod.GET.equals(requestContext.getMethod()) || HttpMethod.HEAD.equals(requestContext.getMethod()))) {
+            return;
+        }
+        final Path path = getPath(responseContext.getEntity());
+        if (path == null) {
+            return;
+        }
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException ex) {
+            // writer reports missing file
+            return;
+        }
+        if (!attributes.isRegularFile()) {
+            return;
+        }
+
+        final long size = attributes.size();
+        final long lastModified = attributes.lastModifiedTime().toMillis();
+        final MultivaluedMap<String, Object> headers = responseContext.getHeaders();
+        if (!headers.containsKey(HttpHeaders.ETAG)) {
+            headers.putSingle(HttpHeaders.ETAG, "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"");
+        }
+        if (!headers.containsKey(HttpHeaders.LAST_MODIFIED)) {
+            headers.putSingle(HttpHeaders.LAST_MODIFIED, new Date(lastModified));
+        }
+        headers.putSingle(ACCEPT_RANGES, BYTES_UNIT);
+        final String etag = responseContext.getHeaderString(HttpHeaders.ETAG);
+
+        if (matches(requestContext.getHeaderString(HttpHeaders.IF_NONE_MATCH), etag)) {
+            responseContext.setStatus(Response.Status.NOT_MODIFIED.getStatusCode());
+            responseContext.setEntity(null);
+            return;
+        }
+
+        final String range = requestContext.getHeaderString(RANGE);
+        final String ifRange = requestContext.getHeaderString(IF_RANGE);
+        if (range == null || (ifRange != null && !ifRange.trim().equals(etag))) {
+            return;
+        }
+        final long[] byteRange = parseRange(range, size);
+        if (byteRange == null) {
+            // invalid or multiple ranges, full content is sent
+            return;
+        }
+        if (byteRange.length == 0) {
+            responseContext.setStatus(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode());
+            responseContext.setEntity(null);
+            headers.putSingle(CONTENT_RANGE, BYTES_UNIT + " */" + size);
+            return;
+        }
+        responseContext.setStatus(Response.Status.PARTIAL_CONTENT.getStatusCode());
+        headers.putSingle(CONTENT_RANGE, BYTES_UNIT + " " + byteRange[0] + "-" + byteRange[1] + "/" + size);
+        // ranges are applied to identity encoding, compression must be skipped
+        requestContext.setProperty(CompressionProvider.SKIP_COMPRESSION_PROPERTY, Boolean.TRUE);
+        responseContext.setEntity(new FileRegion(path, byteRange[0], byteRange[1] - byteRange[0] + 1), responseContext.getEntityAnnotations(), responseContext.getMediaType());
+    }
+
+    @Override
+    public boolean isWriteable(final Class<?> type, final Type genericType, final Annotation[] annotations, final MediaType mediaType) {
+        return File.class.isAssignableFrom(type) || Path.class.isAssignableFrom(type) || FileChannel.class.isAssignableFrom(type)
+                || FileRegion.class.isAssignableFrom(type) || MappedByteBuffer.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public long getSize(final Object entity, final Class<?> type, final Type genericType, final Annotation[] annotations, final MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(final Object entity, final Class<?> type, final Type genericType, final Annotation[] annotations, final MediaType mediaType,
+                        final MultivaluedMap<String, Object> httpHeaders, final OutputStream entityStream) throws IOException {
+        if (entity instanceof FileRegion) {
+            final FileRegion region = (FileRegion) entity;
+            try (FileChannel channel = FileChannel.open(region.getPath(), StandardOpenOption.READ)) {
+                final long count = Math.max(0L, Math.min(region.getCount(), channel.size() - region.getPosition()));
+                httpHeaders.putSingle(HttpHeaders.CONTENT_LENGTH, count);
+                transfer(channel, region.getPosition(), count, entityStream);
+            }
+        } else if (entity instanceof FileChannel) {
+            try (FileChannel channel = (FileChannel) entity) {
+                final long position = channel.position();
+                final long count = Math.max(0L, channel.size() - position);
+                httpHeaders.putSingle(HttpHeaders.CONTENT_LENGTH, count);
+                transfer(channel, position, count, entityStream);
+            }
+        } else if (entity instanceof MappedByteBuffer) {
+            final ByteBuffer buffer = ((MappedByteBuffer) entity).duplicate();
+            httpHeaders.putSingle(HttpHeaders.CONTENT_LENGTH, buffer.remaining());
+            write(buffer, entityStream);
+        } else {
+            try (FileChannel channel = FileChannel.open(getPath(entity), StandardOpenOption.READ)) {
+                final long count = channel.size();
+                httpHeaders.putSingle(HttpHeaders.CONTENT_LENGTH, count);
+                transfer(channel, 0L, count, entityStream);
+            }
+        }
+    }
+
+    private void transfer(final FileChannel channel, final long position, final long count, final OutputStream outputStream) throws IOException {
+        long offset = position;
+        long remaining = count;
+        final TransferBufferPool pool = buffers;
+        final TransferBufferPool.TransferBuffer buffer = pool.acquire();
+        try {
+            while (remaining > 0) {
+                buffer.direct.clear();
+                buffer.direct.limit((int) Math.min(buffer.direct.capacity(), remaining));
+                final int read = channel.read(buffer.direct, offset);
+                if (read < 0) {
+                    break;
+                }
+                buffer.direct.flip();
+                buffer.direct.get(buffer.array, 0, read);
+                outputStream.write(buffer.array, 0, read);
+                offset += read;
+                remaining -= read;
+            }
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    private void write(final ByteBuffer content, final OutputStream outputStream) throws IOException {
+        final TransferBufferPool pool = buffers;
+        final TransferBufferPool.TransferBuffer buffer = pool.acquire();
+        try {
+            while (content.hasRemaining()) {
+                final int length = Math.min(buffer.array.length, content.remaining());
+                content.get(buffer.array, 0, length);
+                outputStream.write(buffer.array, 0, length);
+            }
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    private static Path getPath(final Object entity) {
+        return entity instanceof File ? ((File) entity).toPath() : entity instanceof Path ? (Path) entity : null;
+    }
+
+    /**
+     * Parse single byte range.
+     *
+     * @param range value of <code>Range</code> header
+     * @param size  size of the content
+     * @return first and last position (inclusive), empty array if range is not satisfiable or <code>null</code> if
+     * range is invalid or multiple ranges are requested
+     */
+    static long[] parseRange(final String range, final long size) {
+        final String value = range.trim();
+        if (!value.regionMatches(true, 0, BYTES_UNIT + "=", 0, BYTES_UNIT.length() + 1)) {
+            return null;
+        }
+        final String spec = value.substring(BYTES_UNIT.length() + 1).trim();
+        final int dash = spec.indexOf('-');
+        if (spec.indexOf(',') >= 0 || dash < 0) {
+            return null;
+        }
+        try {
+            final String first = spec.substring(0, dash).trim();
+            final String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // suffix range: last N bytes
+                final long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) {
+                    return new long[0];
+                }
+                return new long[]{Math.max(0L, size - suffix), size - 1};
+            }
+            final long start = Long.parseLong(first);
+            final long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (start < 0 || (!last.isEmpty() && Long.parseLong(last) < start)) {
+                return null;
+            }
+            return start >= size ? new long[0] : new long[]{start, end};
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static boolean matches(final String ifNoneMatch, final String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        for (final String tag : ifNoneMatch.split(",")) {
+            final String trimmed = tag.trim();
+            if ("*".equals(trimmed) || etag.equals(trimmed.startsWith("W/") ? trimmed.substring(2) : trimmed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,49 @@
+package hu.blackbelt.jaxrs.providers;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.Value;
+
+import java.io.File;
+import java.nio.file.Path;
+
+/**
+ * Region of a file written by {@link FileContentProvider}, resources can return it to serve a part of a file.
+ */
+@Value
+public class FileRegion {
+
+    Path path;
+
+    /**
+     * Position of the first byte.
+     */
+    long position;
+
+    /**
+     * Number of bytes.
+     */
+    long count;
+
+    public static FileRegion of(final File file, final long position, final long count) {
+        return new FileRegion(file.toPath(), position, count);
+    }
+}
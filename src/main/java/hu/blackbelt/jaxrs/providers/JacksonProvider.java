@@ -20,11 +20,15 @@ package hu.blackbelt.jaxrs.providers;
  * #L%
  */
 
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import com.fasterxml.jackson.core.util.JsonRecyclerPools;
+import com.fasterxml.jackson.core.util.RecyclerPool;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.jaxrs.json.JacksonJaxbJsonProvider;
+import com.fasterxml.jackson.jaxrs.json.JsonMapperConfigurator;
 import hu.blackbelt.jaxrs.SharedProviderStore;
 import lombok.extern.slf4j.Slf4j;
 import org.osgi.framework.BundleContext;
@@ -52,36 +56,73 @@ public class JacksonProvider {
     @Reference(cardinality = ReferenceCardinality.OPTIONAL, policyOption = ReferencePolicyOption.GREEDY)
     ObjectMapper objectMapper;
 
+    private static final String BUFFER_POOL_SIZE_KEY = "bufferPool.size";
+    private static final int DEFAULT_BUFFER_POOL_SIZE = 4 * Runtime.getRuntime().availableProcessors();
+
     private JacksonJaxbJsonProvider jacksonJaxbJsonProvider;
     private ServiceRegistration<JacksonJaxbJsonProvider> jaxbJsonProviderServiceRegistration;
+    private BoundedBufferRecyclerPool bufferPool;
+    private ObjectMapperRegistry.Key objectMapperKey;
 
     @Activate
     @Modified
     void configure(final BundleContext context, final Map<String, Object> config) {
-        jacksonJaxbJsonProvider = new JacksonJaxbJsonProvider(objectMapper, JacksonJaxbJsonProvider.DEFAULT_ANNOTATIONS);
-        jacksonJaxbJsonProvider.configure(SerializationFeature.INDENT_OUTPUT, false);
-        jacksonJaxbJsonProvider.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
-        jacksonJaxbJsonProvider.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        final String className = getClass().getSimpleName();
+        final ObjectMapperRegistry.Key newObjectMapperKey = ObjectMapperRegistry.Key.of(JacksonProvider.class.getName(), objectMapper, className + ".", config);
+        final boolean changed = !newObjectMapperKey.equals(objectMapperKey);
+        if (changed) {
+            // mapper is shared by providers of the same configuration, it is rebuilt only if configuration is changed
+            final ObjectMapper mapper = ObjectMapperRegistry.acquire(newObjectMapperKey, () -> createObjectMapper(config));
+            if (objectMapperKey != null) {
+                ObjectMapperRegistry.release(objectMapperKey);
+            }
+            objectMapperKey = newObjectMapperKey;
+
+            jacksonJaxbJsonProvider = new JacksonJaxbJsonProvider(mapper, JacksonJaxbJsonProvider.DEFAULT_ANNOTATIONS);
+            final RecyclerPool<BufferRecycler> recyclerPool = mapper.getFactory()._getRecyclerPool();
+            bufferPool = recyclerPool instanceof BoundedBufferRecyclerPool ? (BoundedBufferRecyclerPool) recyclerPool : null;
+
+            // This is hack, because the interface does not work in first time, so we emulate it
+            // http://stackoverflow.com/questions/10860142/appengine-java-jersey-jackson-jaxbannotationintrospector-noclassdeffounderror
+            // But that solution is not correct fpr this problem, because xc cause other problem (reason: JAXB annotations)
+            try {
+                jacksonJaxbJsonProvider.writeTo(1L, Long.class, Long.class, new Annotation[]{}, MediaType.APPLICATION_JSON_TYPE, null, new ByteArrayOutputStream());
+            } catch (IOException ex) {
+                log.warn("Error on initialization of Jackson JSON provider", ex);
+            }
+        } else {
+            log.debug("Object mapper configuration is not changed: {}", objectMapperKey);
+        }
+
+        final Dictionary<String, Object> props = new Hashtable<>();
+        final Object sharedProviderFilter = config.get(SharedProviderStore.APPLICATIONS_FILTER);
+        if (sharedProviderFilter != null) {
+            props.put(SharedProviderStore.APPLICATIONS_FILTER, sharedProviderFilter);
+        }
+        if (jaxbJsonProviderServiceRegistration != null && !changed) {
+            jaxbJsonProviderServiceRegistration.setProperties(props);
+            return;
+        }
+        if (jaxbJsonProviderServiceRegistration != null) {
+            jaxbJsonProviderServiceRegistration.unregister();
+        }
+        jaxbJsonProviderServiceRegistration = context.registerService(JacksonJaxbJsonProvider.class, jacksonJaxbJsonProvider, props);
+    }
+
+    private ObjectMapper createObjectMapper(final Map<String, Object> config) {
+        final ObjectMapper mapper = objectMapper != null ? copyObjectMapper(objectMapper) : new JsonMapperConfigurator(null, JacksonJaxbJsonProvider.DEFAULT_ANNOTATIONS).getDefaultMapper();
+        if (mapper == null) {
+            // shared (custom) object mapper must not be reconfigured
+            return objectMapper;
+        }
+        mapper.configure(SerializationFeature.INDENT_OUTPUT, false);
+        mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 
         final String className = getClass().getSimpleName();
+        ObjectMapperRegistry.configureFeatures(mapper, className + ".", config);
         config.forEach((k, v) -> {
-            if (k.startsWith(className + ".SerializationFeature.")) {
-                try {
-                    final SerializationFeature feature = SerializationFeature.valueOf(k.replace(className + ".SerializationFeature.", ""));
-                    log.info("Update SerializationFeature option '" + feature + "': " + v);
-                    jacksonJaxbJsonProvider.configure(feature, Boolean.parseBoolean((String) v));
-                } catch (IllegalArgumentException ex) {
-                    log.warn("Invalid SerializationFeature option: " + k);
-                }
-            } else if (k.startsWith(className + ".DeserializationFeature.")) {
-                try {
-                    final DeserializationFeature feature = DeserializationFeature.valueOf(k.replace(className + ".DeserializationFeature.", ""));
-                    log.info("Update DeserializationFeature option '" + feature + "': " + v);
-                    jacksonJaxbJsonProvider.configure(feature, Boolean.parseBoolean((String) v));
-                } catch (IllegalArgumentException ex) {
-                    log.warn("Invalid DeserializationFeature option: " + k);
-                }
-            } else if ((className + ".ObjectMapper.modules").equals(k) && v != null) {
+            if ((className + ".ObjectMapper.modules").equals(k) && v != null) {
                 if (objectMapper != null) {
                     log.warn("Custom object mapper is used by Jackson JAXB provider, modules are not added: {}", v);
                 } else {
@@ -90,7 +131,7 @@ public class JacksonProvider {
                         try {
                             log.info("Registering ObjectMapper module: " + moduleName);
                             final Module m = (Module) Class.forName(moduleName).newInstance();
-                            jacksonJaxbJsonProvider.locateMapper(ObjectMapper.class, MediaType.APPLICATION_JSON_TYPE).registerModule(m);
+                            mapper.registerModule(m);
                         } catch (ClassNotFoundException ex) {
                             log.error("Unknown ObjectMapper module: " + moduleName, ex);
                         } catch (InstantiationException | IllegalAccessException ex) {
@@ -101,24 +142,29 @@ public class JacksonProvider {
             }
         });
 
-        // This is hack, because the interface does not work in first time, so we emulate it
-        // http://stackoverflow.com/questions/10860142/appengine-java-jersey-jackson-jaxbannotationintrospector-noclassdeffounderror
-        // But that solution is not correct fpr this problem, because xc cause other problem (reason: JAXB annotations)
-        try {
-            jacksonJaxbJsonProvider.writeTo(1L, Long.class, Long.class, new Annotation[]{}, MediaType.APPLICATION_JSON_TYPE, null, new ByteArrayOutputStream());
-        } catch (IOException ex) {
-            log.warn("Error on initialization of Jackson JSON provider", ex);
+        final Object bufferPoolSize = config.get(className + "." + BUFFER_POOL_SIZE_KEY);
+        final int poolSize = bufferPoolSize != null ? Integer.parseInt(String.valueOf(bufferPoolSize).trim()) : DEFAULT_BUFFER_POOL_SIZE;
+        if (poolSize > 0) {
+            mapper.getFactory().setRecyclerPool(new BoundedBufferRecyclerPool(poolSize));
+            log.info("Jackson buffer pool size: " + poolSize);
+        } else {
+            // factory of the copy may have a bounded pool of the base mapper
+            mapper.getFactory().setRecyclerPool(JsonRecyclerPools.defaultPool());
         }
+        return mapper;
+    }
 
-        final Dictionary<String, Object> props = new Hashtable<>();
-        final Object sharedProviderFilter = config.get(SharedProviderStore.APPLICATIONS_FILTER);
-        if (sharedProviderFilter != null) {
-            props.put(SharedProviderStore.APPLICATIONS_FILTER, sharedProviderFilter);
-        }
-        if (jaxbJsonProviderServiceRegistration != null) {
-            jaxbJsonProviderServiceRegistration.unregister();
+    /**
+     * Referenced (custom) object mapper is not reconfigured, configuration is applied to its copy (including a copy of
+     * its factory). Mappers not supporting copy are used as they are.
+     */
+    private static ObjectMapper copyObjectMapper(final ObjectMapper objectMapper) {
+        try {
+            return objectMapper.copy();
+        } catch (IllegalStateException ex) {
+            log.warn("Unable to copy custom object mapper, features and buffer pool are not applied: {}", objectMapper.getClass().getName());
+            return null;
         }
-        jaxbJsonProviderServiceRegistration = context.registerService(JacksonJaxbJsonProvider.class, jacksonJaxbJsonProvider, props);
     }
 
     @Deactivate
@@ -127,6 +173,20 @@ public class JacksonProvider {
             jaxbJsonProviderServiceRegistration.unregister();
             jaxbJsonProviderServiceRegistration = null;
         }
+        if (objectMapperKey != null) {
+            ObjectMapperRegistry.release(objectMapperKey);
+            objectMapperKey = null;
+        }
         jacksonJaxbJsonProvider = null;
+        bufferPool = null;
+    }
+
+    /**
+     * Get buffer pool of JSON parsers/generators.
+     *
+     * @return buffer pool (including allocation and pool hit statistics) or <code>null</code> if pooling is disabled
+     */
+    public BoundedBufferRecyclerPool getBufferPool() {
+        return bufferPool;
     }
 }
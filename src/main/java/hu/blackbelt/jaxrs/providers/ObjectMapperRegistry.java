@@ -0,0 +1,175 @@
+package hu.blackbelt.jaxrs.providers;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Registry of object mappers shared by Jackson providers.
+ *
+ * <p>Object mappers are keyed by their configuration (fingerprint): providers asking for the same configuration share
+ * one mapper including its warmed up serializer and deserializer caches, a new mapper is built only if the
+ * configuration is changed. Mappers are reference counted, a mapper is dropped when it is released by its last
+ * user. Shared mappers must not be reconfigured by their users.</p>
+ */
+@Slf4j
+public final class ObjectMapperRegistry {
+
+    private static final Map<Key, Entry> MAPPERS = new HashMap<>();
+
+    private ObjectMapperRegistry() {
+    }
+
+    /**
+     * Get object mapper of a given configuration, it is created if no mapper is registered with the same key.
+     *
+     * @param key     configuration of the object mapper
+     * @param factory factory creating (and configuring) new object mapper
+     * @return shared object mapper
+     */
+    public static synchronized ObjectMapper acquire(final Key key, final Supplier<ObjectMapper> factory) {
+        Entry entry = MAPPERS.get(key);
+        if (entry == null) {
+            entry = new Entry(factory.get());
+            MAPPERS.put(key, entry);
+            log.debug("Object mapper created: {}", key);
+        }
+        entry.references++;
+        return entry.mapper;
+    }
+
+    /**
+     * Release object mapper of a given configuration.
+     *
+     * @param key configuration of the object mapper
+     */
+    public static synchronized void release(final Key key) {
+        final Entry entry = MAPPERS.get(key);
+        if (entry != null && --entry.references <= 0) {
+            MAPPERS.remove(key);
+            log.debug("Object mapper dropped: {}", key);
+        }
+    }
+
+    /**
+     * Apply <code>SerializationFeature.*</code> and <code>DeserializationFeature.*</code> options of component
+     * configuration to a new object mapper (before it is shared).
+     *
+     * @param mapper object mapper
+     * @param prefix prefix of options (i.e. simple class name of the provider and dot)
+     * @param config component configuration
+     */
+    static void configureFeatures(final ObjectMapper mapper, final String prefix, final Map<String, Object> config) {
+        config.forEach((k, v) -> {
+            if (k.startsWith(prefix + "SerializationFeature.")) {
+                try {
+                    final SerializationFeature feature = SerializationFeature.valueOf(k.substring((prefix + "SerializationFeature.").length()));
+                    log.info("Update SerializationFeature option '" + feature + "': " + v);
+                    mapper.configure(feature, Boolean.parseBoolean(String.valueOf(v)));
+                } catch (IllegalArgumentException ex) {
+                    log.warn("Invalid SerializationFeature option: " + k);
+                }
+            } else if (k.startsWith(prefix + "DeserializationFeature.")) {
+                try {
+                    final DeserializationFeature feature = DeserializationFeature.valueOf(k.substring((prefix + "DeserializationFeature.").length()));
+                    log.info("Update DeserializationFeature option '" + feature + "': " + v);
+                    mapper.configure(feature, Boolean.parseBoolean(String.valueOf(v)));
+                } catch (IllegalArgumentException ex) {
+                    log.warn("Invalid DeserializationFeature option: " + k);
+                }
+            }
+        });
+    }
+
+    /**
+     * Get number of registered object mappers.
+     *
+     * @return number of object mappers
+     */
+    public static synchronized int size() {
+        return MAPPERS.size();
+    }
+
+    /**
+     * Configuration of an object mapper.
+     */
+    @Value
+    public static class Key {
+
+        /**
+         * Type of the object mapper (i.e. class name of the provider using it).
+         */
+        String type;
+
+        /**
+         * Base object mapper (compared by identity), <code>null</code> if default one is used.
+         */
+        ObjectMapper base;
+
+        /**
+         * Options of the object mapper (sorted by key).
+         */
+        Map<String, String> options;
+
+        /**
+         * Create key of component configuration, all options starting with a given prefix are part of the key.
+         *
+         * @param type   type of the object mapper
+         * @param base   base object mapper
+         * @param prefix prefix of options
+         * @param config component configuration
+         * @return object mapper key
+         */
+        public static Key of(final String type, final ObjectMapper base, final String prefix, final Map<String, Object> config) {
+            final Map<String, String> options = new TreeMap<>();
+            config.forEach((k, v) -> {
+                if (k.startsWith(prefix) && v != null) {
+                    options.put(k.substring(prefix.length()), String.valueOf(v));
+                }
+            });
+            return new Key(type, base, Collections.unmodifiableMap(options));
+        }
+
+        @Override
+        public String toString() {
+            return type + (base != null ? "@" + Integer.toHexString(System.identityHashCode(base)) : "") + options;
+        }
+    }
+
+    private static class Entry {
+        final ObjectMapper mapper;
+        int references;
+
+        Entry(final ObjectMapper mapper) {
+            this.mapper = mapper;
+        }
+    }
+}
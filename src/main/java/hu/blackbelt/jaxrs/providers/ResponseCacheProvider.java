@@ -0,0 +1,450 @@
+package hu.blackbelt.jaxrs.providers;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.Getter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.PhaseInterceptorChain;
+import org.osgi.service.component.annotations.*;
+
+import javax.annotation.Priority;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.IOException;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-side cache of serialized GET responses supporting conditional requests (<code>If-None-Match</code>).
+ *
+ * <p>Responses are keyed by request path, query and <code>Accept</code>/<code>Accept-Encoding</code> headers, request
+ * headers listed by <code>Vary</code> response header must match too. Cached responses are replayed without invoking
+ * the resource method, strong ETags are calculated from the serialized entity. Unsafe requests (i.e. POST, PUT,
+ * DELETE) invalidate cached responses of the same path. Requests with credentials (<code>Authorization</code> or
+ * <code>Cookie</code> header) are neither served from nor stored in the cache.</p>
+ *
+ * <p>Cache is bounded by number of entries and total size of cached entities. Headers specific to the original
+ * exchange (<code>X-Exchange-Id</code> by default) are not replayed.</p>
+ */
+@Provider
+@PreMatching
+@Priority(Priorities.HEADER_DECORATOR)
+@Slf4j
+@Component(immediate = true, configurationPolicy = ConfigurationPolicy.REQUIRE, service = ResponseCacheProvider.class)
+public class ResponseCacheProvider implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+    private static final String CACHE_KEY = ResponseCacheProvider.class.getName() + ".key";
+    private static final String VARY_KEY = ResponseCacheProvider.class.getName() + ".vary";
+    private static final String COOKIE_HEADER = "Cookie";
+
+    private static final String MAX_ENTRIES_KEY = "maxEntries";
+    private static final String TTL_KEY = "ttl";
+    private static final String MAX_ENTRY_SIZE_KEY = "maxEntrySize";
+    private static final String MAX_SIZE_KEY = "maxSize";
+    private static final String EXCLUDED_HEADERS_KEY = "excludedHeaders";
+
+    private static final int DEFAULT_MAX_ENTRIES = 1000;
+    private static final long DEFAULT_TTL = 60;
+    private static final int DEFAULT_MAX_ENTRY_SIZE = 1024 * 1024;
+    private static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private volatile Cache cache = new Cache(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_SIZE);
+    private volatile long ttlMillis = DEFAULT_TTL * 1000L;
+    private volatile int maxEntrySize = DEFAULT_MAX_ENTRY_SIZE;
+    private volatile Set<String> excludedHeaders = CapturedResponse.DEFAULT_EXCLUDED_HEADERS;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder capacityEvictions = new LongAdder();
+    private final LongAdder expiredEvictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    @Activate
+    @Modified
+    void configure(final Map<String, Object> config) {
+        final String className = getClass().getSimpleName();
+
+        final Object newMaxEntries = config.get(className + "." + MAX_ENTRIES_KEY);
+        final int maxEntries = newMaxEntries != null ? Integer.parseInt(String.valueOf(newMaxEntries).trim()) : DEFAULT_MAX_ENTRIES;
+        final Object newTtl = config.get(className + "." + TTL_KEY);
+        ttlMillis = (newTtl != null ? Long.parseLong(String.valueOf(newTtl).trim()) : DEFAULT_TTL) * 1000L;
+        final Object newMaxEntrySize = config.get(className + "." + MAX_ENTRY_SIZE_KEY);
+        maxEntrySize = newMaxEntrySize != null ? Integer.parseInt(String.valueOf(newMaxEntrySize).trim()) : DEFAULT_MAX_ENTRY_SIZE;
+        final Object newMaxSize = config.get(className + "." + MAX_SIZE_KEY);
+        final long maxSize = newMaxSize != null ? Long.parseLong(String.valueOf(newMaxSize).trim()) : DEFAULT_MAX_SIZE;
+        final Object newExcludedHeaders = config.get(className + "." + EXCLUDED_HEADERS_KEY);
+        excludedHeaders = newExcludedHeaders != null ? parseHeaders(String.valueOf(newExcludedHeaders)) : CapturedResponse.DEFAULT_EXCLUDED_HEADERS;
+
+        // cache is cleared on configuration change
+        cache = new Cache(maxEntries, maxSize);
+        log.info("Update response cache [max entries={}; max size={}; TTL={} ms; max entry size={}; excluded headers={}]",
+                maxEntries, maxSize, ttlMillis, maxEntrySize, excludedHeaders);
+    }
+
+    @Deactivate
+    void stop() {
+        cache.clear();
+    }
+
+    private static Set<String> parseHeaders(final String headers) {
+        final Set<String> result = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        for (final String header : headers.split("\\s*,\\s*")) {
+            if (!header.trim().isEmpty()) {
+                result.add(header.trim());
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    @Override
+    public void filter(final ContainerRequestContext requestContext) {
+        final String method = requestContext.getMethod();
+        final URI requestUri = requestContext.getUriInfo().getRequestUri();
+
+        if (!HttpMethod.GET.equals(method)) {
+            if (!HttpMethod.HEAD.equals(method) && !HttpMethod.OPTIONS.equals(method)) {
+                final int removed = cache.invalidate(requestUri.getPath());
+                if (removed > 0) {
+                    invalidations.add(removed);
+                }
+            }
+            return;
+        }
+        if (requestContext.getHeaderString(HttpHeaders.AUTHORIZATION) != null || requestContext.getHeaderString(COOKIE_HEADER) != null) {
+            // responses of authenticated requests may be user specific
+            return;
+        }
+
+        final CacheKey key = new CacheKey(requestUri.getPath(), requestUri.getRawQuery(),
+                requestContext.getHeaderString(HttpHeaders.ACCEPT), requestContext.getHeaderString("Accept-Encoding"));
+
+        final String cacheControl = requestContext.getHeaderString(HttpHeaders.CACHE_CONTROL);
+        final boolean noCache = cacheControl != null && cacheControl.toLowerCase(Locale.ROOT).contains("no-cache");
+
+        final CachedEntry entry = noCache ? null : cache.get(key, requestContext);
+        if (entry != null) {
+            if (matches(requestContext.getHeaderString(HttpHeaders.IF_NONE_MATCH), entry.getEtag())) {
+                notModified.increment();
+                requestContext.abortWith(Response.notModified().header(HttpHeaders.ETAG, entry.getEtag()).build());
+            } else {
+                hits.increment();
+                requestContext.abortWith(entry.getResponse().toResponse());
+            }
+            return;
+        }
+
+        misses.increment();
+        final Exchange exchange = getCurrentExchange();
+        if (exchange != null) {
+            exchange.put(CACHE_KEY, key);
+        }
+    }
+
+    @Override
+    public void filter(final ContainerRequestContext requestContext, final ContainerResponseContext responseContext) {
+        final Exchange exchange = getCurrentExchange();
+        if (exchange == null || exchange.get(CACHE_KEY) == null) {
+            return;
+        }
+        final String cacheControl = responseContext.getHeaderString(HttpHeaders.CACHE_CONTROL);
+        final Map<String, String> vary = getVaryValues(requestContext, responseContext.getHeaderString(HttpHeaders.VARY));
+        final boolean cacheable = responseContext.getStatus() == Response.Status.OK.getStatusCode()
+                && responseContext.hasEntity()
+                && vary != null
+                && !responseContext.getHeaders().containsKey(HttpHeaders.SET_COOKIE)
+                && (cacheControl == null || !(cacheControl.contains("no-store") || cacheControl.contains("private")));
+        if (cacheable) {
+            exchange.put(VARY_KEY, vary);
+        } else {
+            exchange.remove(CACHE_KEY);
+        }
+    }
+
+    /**
+     * Get request header values of headers listed by <code>Vary</code> response header.
+     *
+     * @return header values (by lower case header names) or <code>null</code> if response varies by any header
+     */
+    private static Map<String, String> getVaryValues(final ContainerRequestContext requestContext, final String vary) {
+        if (vary == null) {
+            return Collections.emptyMap();
+        }
+        final Map<String, String> values = new TreeMap<>();
+        for (final String header : vary.split(",")) {
+            final String name = header.trim().toLowerCase(Locale.ROOT);
+            if ("*".equals(name)) {
+                return null;
+            } else if (!name.isEmpty()) {
+                values.put(name, requestContext.getHeaderString(name));
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void aroundWriteTo(final WriterInterceptorContext context) throws IOException {
+        final Exchange exchange = getCurrentExchange();
+        final CacheKey key = exchange != null ? (CacheKey) exchange.remove(CACHE_KEY) : null;
+        @SuppressWarnings("unchecked") final Map<String, String> vary = exchange != null ? (Map<String, String>) exchange.remove(VARY_KEY) : null;
+        if (key == null || vary == null) {
+            context.proceed();
+            return;
+        }
+
+        final BufferingOutputStream outputStream = new BufferingOutputStream(context.getOutputStream(), maxEntrySize);
+        context.setOutputStream(outputStream);
+        context.proceed();
+
+        final byte[] body = outputStream.toByteArray();
+        if (body != null) {
+            final String etag = createEtag(body);
+            context.getHeaders().putSingle(HttpHeaders.ETAG, etag);
+            cache.put(key, new CachedEntry(new CapturedResponse(Response.Status.OK.getStatusCode(), context.getHeaders(), body, excludedHeaders), etag, vary));
+            outputStream.writeBuffered();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getNotModified() {
+        return notModified.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getCapacityEvictions() {
+        return capacityEvictions.sum();
+    }
+
+    public long getExpiredEvictions() {
+        return expiredEvictions.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    public int getSize() {
+        return cache.size();
+    }
+
+    /**
+     * Get total size of cached entities.
+     *
+     * @return size in bytes
+     */
+    public long getBytes() {
+        return cache.bytes();
+    }
+
+    private static Exchange getCurrentExchange() {
+        final Message message = PhaseInterceptorChain.getCurrentMessage();
+        return message != null ? message.getExchange() : null;
+    }
+
+    private static boolean matches(final String ifNoneMatch, final String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (final String tag : ifNoneMatch.split(",")) {
+            final String trimmed = tag.trim();
+            if ("*".equals(trimmed) || etag.equals(trimmed.startsWith("W/") ? trimmed.substring(2) : trimmed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String createEtag(final byte[] body) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            final StringBuilder sb = new StringBuilder(34).append('"');
+            for (int i = 0; i < 16; i++) {
+                sb.append(HEX[(digest[i] >> 4) & 0x0f]).append(HEX[digest[i] & 0x0f]);
+            }
+            return sb.append('"').toString();
+        } catch (NoSuchAlgorithmException ex) {
+            // SHA-256 is mandatory for all Java platforms
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Value
+    private static class CacheKey {
+        String path;
+        String query;
+        String accept;
+        String acceptEncoding;
+    }
+
+    @Getter
+    private static class CachedEntry {
+        private final CapturedResponse response;
+        private final String etag;
+        private final Map<String, String> vary;
+        private volatile long lastAccess = System.nanoTime();
+
+        CachedEntry(final CapturedResponse response, final String etag, final Map<String, String> vary) {
+            this.response = response;
+            this.etag = etag;
+            this.vary = vary;
+        }
+
+        long size() {
+            return response.getBody().length;
+        }
+
+        boolean matches(final ContainerRequestContext requestContext) {
+            for (final Map.Entry<String, String> header : vary.entrySet()) {
+                if (!Objects.equals(header.getValue(), requestContext.getHeaderString(header.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Bounded map of cached entries, expired entries are evicted on access. Least recently used entries are evicted in
+     * batches (down to 90% of capacity and size budget) by a single thread when capacity or size budget is exceeded so
+     * lookups are never blocked.
+     */
+    private class Cache {
+
+        private final Map<CacheKey, CachedEntry> entries = new ConcurrentHashMap<>();
+        private final AtomicBoolean evicting = new AtomicBoolean();
+        private final AtomicLong bytes = new AtomicLong();
+        private final int maxEntries;
+        private final long maxSize;
+
+        Cache(final int maxEntries, final long maxSize) {
+            this.maxEntries = Math.max(1, maxEntries);
+            this.maxSize = maxSize > 0 ? maxSize : Long.MAX_VALUE;
+        }
+
+        CachedEntry get(final CacheKey key, final ContainerRequestContext requestContext) {
+            final CachedEntry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            } else if (System.currentTimeMillis() - entry.getResponse().getCreatedAt() > ttlMillis) {
+                if (remove(key, entry)) {
+                    expiredEvictions.increment();
+                }
+                return null;
+            } else if (!entry.matches(requestContext)) {
+                return null;
+            }
+            entry.lastAccess = System.nanoTime();
+            return entry;
+        }
+
+        void put(final CacheKey key, final CachedEntry entry) {
+            if (entry.size() > maxSize) {
+                return;
+            }
+            final CachedEntry replaced = entries.put(key, entry);
+            bytes.addAndGet(entry.size() - (replaced != null ? replaced.size() : 0L));
+            if ((entries.size() > maxEntries || bytes.get() > maxSize) && evicting.compareAndSet(false, true)) {
+                try {
+                    evict();
+                } finally {
+                    evicting.set(false);
+                }
+            }
+        }
+
+        private void evict() {
+            final int targetEntries = Math.max(1, maxEntries * 9 / 10);
+            final long targetSize = maxSize / 10 * 9;
+            if (entries.size() <= targetEntries && bytes.get() <= targetSize) {
+                return;
+            }
+            final List<Map.Entry<CacheKey, CachedEntry>> snapshot = new ArrayList<>(entries.entrySet());
+            snapshot.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+            for (int i = 0; i < snapshot.size() && (entries.size() > targetEntries || bytes.get() > targetSize); i++) {
+                if (remove(snapshot.get(i).getKey(), snapshot.get(i).getValue())) {
+                    capacityEvictions.increment();
+                }
+            }
+        }
+
+        private boolean remove(final CacheKey key, final CachedEntry entry) {
+            if (entries.remove(key, entry)) {
+                bytes.addAndGet(-entry.size());
+                return true;
+            }
+            return false;
+        }
+
+        int invalidate(final String path) {
+            int removed = 0;
+            for (final Map.Entry<CacheKey, CachedEntry> entry : entries.entrySet()) {
+                if (Objects.equals(path, entry.getKey().getPath()) && remove(entry.getKey(), entry.getValue())) {
+                    removed++;
+                }
+            }
+            return removed;
+        }
+
+        int size() {
+            return entries.size();
+        }
+
+        long bytes() {
+            return bytes.get();
+        }
+
+        void clear() {
+            entries.keySet().forEach(key -> {
+                final CachedEntry entry = entries.get(key);
+                if (entry != null) {
+                    remove(key, entry);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package hu.blackbelt.jaxrs.providers;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import hu.blackbelt.jaxrs.interceptors.AbstractCompletionInterceptor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.Phase;
+import org.apache.cxf.phase.PhaseInterceptorChain;
+import org.osgi.service.component.annotations.*;
+
+import javax.annotation.Priority;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.IOException;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single-flight coalescing of identical concurrent GET requests.
+ *
+ * <p>Requests are identical if their path, query, <code>Accept</code> header and configured headers are the same. The
+ * first request (leader) invokes the resource method, identical requests arriving while it is in flight (followers)
+ * are waiting for its serialized response. Followers invoke the resource method themselves if the leader fails (no
+ * <code>200 OK</code> response with entity, response is too large or writing it failed) or the response is not
+ * available within the timeout.</p>
+ *
+ * <p>Flight of the leader is completed by a completion interceptor added to its chain too, so followers are released
+ * and the flight is removed if the request fails by an unmapped exception or the response is not written.</p>
+ */
+@Provider
+@PreMatching
+@Priority(Priorities.HEADER_DECORATOR + 1)
+@Slf4j
+@Component(immediate = true, configurationPolicy = ConfigurationPolicy.REQUIRE, service = SingleFlightProvider.class)
+public class SingleFlightProvider implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+    private static final String FLIGHT_KEY = SingleFlightProvider.class.getName() + ".flight";
+
+    private static final String TIMEOUT_KEY = "timeout";
+    private static final String HEADERS_KEY = "headers";
+    private static final String MAX_ENTRY_SIZE_KEY = "maxEntrySize";
+
+    private static final long DEFAULT_TIMEOUT = 5000;
+    private static final String DEFAULT_HEADERS = "Authorization,Cookie,Accept-Encoding,Accept-Language";
+    private static final int DEFAULT_MAX_ENTRY_SIZE = 1024 * 1024;
+
+    private final ConcurrentMap<FlightKey, Flight> flights = new ConcurrentHashMap<>();
+    private final FlightCompletionInterceptor flightCompletionInterceptor = new FlightCompletionInterceptor();
+
+    private volatile long timeoutMillis = DEFAULT_TIMEOUT;
+    private volatile List<String> headers = Arrays.asList(DEFAULT_HEADERS.split(","));
+    private volatile int maxEntrySize = DEFAULT_MAX_ENTRY_SIZE;
+
+    private final LongAdder leaders = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    @Activate
+    @Modified
+    void configure(final Map<String, Object> config) {
+        final String className = getClass().getSimpleName();
+
+        final Object newTimeout = config.get(className + "." + TIMEOUT_KEY);
+        timeoutMillis = newTimeout != null ? Long.parseLong(String.valueOf(newTimeout).trim()) : DEFAULT_TIMEOUT;
+        final Object newHeaders = config.get(className + "." + HEADERS_KEY);
+        final List<String> headerNames = new ArrayList<>();
+        for (final String header : (newHeaders != null ? String.valueOf(newHeaders) : DEFAULT_HEADERS).split(",")) {
+            if (!header.trim().isEmpty()) {
+                headerNames.add(header.trim());
+            }
+        }
+        headers = Collections.unmodifiableList(headerNames);
+        final Object newMaxEntrySize = config.get(className + "." + MAX_ENTRY_SIZE_KEY);
+        maxEntrySize = newMaxEntrySize != null ? Integer.parseInt(String.valueOf(newMaxEntrySize).trim()) : DEFAULT_MAX_ENTRY_SIZE;
+
+        log.info("Update single-flight provider [timeout={} ms; headers={}; max entry size={}]", timeoutMillis, headers, maxEntrySize);
+    }
+
+    @Deactivate
+    void stop() {
+        // waiting followers invoke the resource methods themselves
+        flights.values().forEach(flight -> flight.complete(null));
+        flights.clear();
+    }
+
+    @Override
+    public void filter(final ContainerRequestContext requestContext) {
+        if (!HttpMethod.GET.equals(requestContext.getMethod())) {
+            return;
+        }
+
+        final URI requestUri = requestContext.getUriInfo().getRequestUri();
+        final List<String> headerValues = new ArrayList<>(headers.size());
+        headers.forEach(header -> headerValues.add(requestContext.getHeaderString(header)));
+        final FlightKey key = new FlightKey(requestUri.getPath(), requestUri.getRawQuery(), requestContext.getHeaderString(HttpHeaders.ACCEPT), headerValues);
+
+        final long now = System.currentTimeMillis();
+        final Flight flight = new Flight(key, now);
+        Flight existing = flights.putIfAbsent(key, flight);
+        if (existing != null && now - existing.startedAt > timeoutMillis && flights.replace(key, existing, flight)) {
+            // leader is stuck, start a new flight
+            existing.complete(null);
+            existing = null;
+        }
+
+        if (existing == null) {
+            leaders.increment();
+            final Message message = PhaseInterceptorChain.getCurrentMessage();
+            final Exchange exchange = message != null ? message.getExchange() : null;
+            if (exchange != null && message.getInterceptorChain() != null) {
+                exchange.put(FLIGHT_KEY, flight);
+                message.getInterceptorChain().add(flightCompletionInterceptor);
+            } else {
+                land(flight, null);
+            }
+            return;
+        }
+
+        final CapturedResponse response = existing.await(Math.max(0L, existing.startedAt + timeoutMillis - now));
+        if (response != null) {
+            coalesced.increment();
+            requestContext.abortWith(response.toResponse());
+        } else {
+            fallbacks.increment();
+        }
+    }
+
+    @Override
+    public void filter(final ContainerRequestContext requestContext, final ContainerResponseContext responseContext) {
+        final Exchange exchange = getCurrentExchange();
+        final Flight flight = exchange != null ? (Flight) exchange.get(FLIGHT_KEY) : null;
+        if (flight == null) {
+            return;
+        }
+        final boolean shareable = responseContext.getStatus() == Response.Status.OK.getStatusCode()
+                && responseContext.hasEntity()
+                && !responseContext.getHeaders().containsKey(HttpHeaders.SET_COOKIE);
+        if (!shareable) {
+            exchange.remove(FLIGHT_KEY);
+            land(flight, null);
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(final WriterInterceptorContext context) throws IOException {
+        final Exchange exchange = getCurrentExchange();
+        final Flight flight = exchange != null ? (Flight) exchange.remove(FLIGHT_KEY) : null;
+        if (flight == null) {
+            context.proceed();
+            return;
+        }
+
+        CapturedResponse response = null;
+        try {
+            final BufferingOutputStream outputStream = new BufferingOutputStream(context.getOutputStream(), maxEntrySize);
+            context.setOutputStream(outputStream);
+            context.proceed();
+
+            final byte[] body = outputStream.toByteArray();
+            if (body != null) {
+                response = new CapturedResponse(Response.Status.OK.getStatusCode(), context.getHeaders(), body);
+                outputStream.writeBuffered();
+            }
+        } finally {
+            land(flight, response);
+        }
+    }
+
+    public long getLeaders() {
+        return leaders.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
+    public int getInFlight() {
+        return flights.size();
+    }
+
+    private void land(final Flight flight, final CapturedResponse response) {
+        // new requests start a new flight
+        flights.remove(flight.key, flight);
+        flight.complete(response);
+    }
+
+    /**
+     * Interceptor completing flight of the leader when the request is failed or it is completed without writing a
+     * shareable response. Landing is idempotent so completion of a landed flight is ignored.
+     */
+    private class FlightCompletionInterceptor extends AbstractCompletionInterceptor<Flight> {
+
+        FlightCompletionInterceptor() {
+            // added by the (pre-matching) request filter running in UNMARSHAL phase
+            super(Phase.PRE_LOGICAL);
+        }
+
+        @Override
+        protected Flight onStart(final Message message) {
+            return (Flight) message.getExchange().get(FLIGHT_KEY);
+        }
+
+        @Override
+        protected void onComplete(final Exchange exchange, final Flight flight, final boolean fault) {
+            exchange.remove(FLIGHT_KEY);
+            land(flight, null);
+        }
+    }
+
+    private static Exchange getCurrentExchange() {
+        final Message message = PhaseInterceptorChain.getCurrentMessage();
+        return message != null ? message.getExchange() : null;
+    }
+
+    @Value
+    private static class FlightKey {
+        String path;
+        String query;
+        String accept;
+        List<String> headers;
+    }
+
+    /**
+     * Request in flight, response is <code>null</code> if it cannot be shared.
+     */
+    private static class Flight {
+        final FlightKey key;
+        final long startedAt;
+        final CompletableFuture<CapturedResponse> response = new CompletableFuture<>();
+
+        Flight(final FlightKey key, final long startedAt) {
+            this.key = key;
+            this.startedAt = startedAt;
+        }
+
+        void complete(final CapturedResponse capturedResponse) {
+            response.complete(capturedResponse);
+        }
+
+        CapturedResponse await(final long timeoutMillis) {
+            try {
+                return response.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException | TimeoutException ex) {
+                return null;
+            }
+        }
+    }
+}
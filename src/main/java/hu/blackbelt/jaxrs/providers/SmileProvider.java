@@ -0,0 +1,68 @@
+package hu.blackbelt.jaxrs.providers;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.jaxrs.smile.JacksonSmileProvider;
+import com.fasterxml.jackson.jaxrs.smile.SmileMediaTypes;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.component.annotations.*;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.ext.Provider;
+import java.util.Map;
+
+/**
+ * Jackson provider marshalling/unmarshalling <code>application/x-jackson-smile</code> payloads.
+ */
+@Provider
+@Consumes(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+@Produces(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+@Component(immediate = true, configurationPolicy = ConfigurationPolicy.REQUIRE, service = SmileProvider.class)
+public class SmileProvider extends AbstractBinaryJacksonProvider {
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policyOption = ReferencePolicyOption.GREEDY)
+    ObjectMapper objectMapper;
+
+    @Activate
+    @Modified
+    void configure(final BundleContext context, final Map<String, Object> config) {
+        register(context, objectMapper, config);
+    }
+
+    @Deactivate
+    void stop() {
+        unregister();
+    }
+
+    @Override
+    JsonFactory createFactory() {
+        return new SmileFactory();
+    }
+
+    @Override
+    Object createProvider(final ObjectMapper objectMapper) {
+        return new JacksonSmileProvider(objectMapper);
+    }
+}
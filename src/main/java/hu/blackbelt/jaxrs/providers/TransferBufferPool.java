@@ -0,0 +1,62 @@
+package hu.blackbelt.jaxrs.providers;
+
+/*-
+ * #%L
+ * CXF JAX-RS application manager
+ * %%
+ * Copyright (C) 2018 - 2023 BlackBelt Technology
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Bounded pool of transfer buffers: direct byte buffer (file channels read into it without intermediate copy) and an
+ * array of the same size used to pass content to output streams. Buffers that do not fit into the pool are dropped.
+ */
+class TransferBufferPool {
+
+    static class TransferBuffer {
+        final ByteBuffer direct;
+        final byte[] array;
+
+        TransferBuffer(final int size) {
+            direct = ByteBuffer.allocateDirect(size);
+            array = new byte[size];
+        }
+    }
+
+    private final BlockingQueue<TransferBuffer> buffers;
+    private final int bufferSize;
+
+    TransferBufferPool(final int size, final int bufferSize) {
+        this.buffers = new ArrayBlockingQueue<>(Math.max(1, size));
+        this.bufferSize = Math.max(1024, bufferSize);
+    }
+
+    TransferBuffer acquire() {
+        final TransferBuffer buffer = buffers.poll();
+        return buffer != null ? buffer : new TransferBuffer(bufferSize);
+    }
+
+    void release(final TransferBuffer buffer) {
+        buffer.direct.clear();
+        if (buffer.array.length == bufferSize) {
+            buffers.offer(buffer);
+        }
+    }
+}